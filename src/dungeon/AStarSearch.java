@@ -0,0 +1,176 @@
+package dungeon;
+
+import java.util.Arrays;
+
+/**
+ * A* search over a connection grid, guided by a distance heuristic. The open set is a
+ * binary heap of primitive longs and the visit marks are stamped per search, so an
+ * instance reuses all its buffers between queries without clearing them. The parent
+ * of every cell reached is kept too, so the path found can be rebuilt.
+ * Instances are not thread safe.
+ *
+ */
+public class AStarSearch {
+  
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private final ConnectionGrid grid;
+  private final int[] costs;
+  private final int[] parents;
+  private final int[] openStamps;
+  private final int[] closedStamps;
+  private long[] heap;
+  private int heapSize;
+  private int stamp;
+  
+  /**
+   * Constructor of the search over a given grid.
+   * @param grid connection grid to be traversed.
+   * @throws IllegalArgumentException when grid is null
+   */
+  public AStarSearch(ConnectionGrid grid) throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    int cells = grid.getCellCount();
+    this.grid = grid;
+    this.costs = new int[cells];
+    this.parents = new int[cells];
+    this.openStamps = new int[cells];
+    this.closedStamps = new int[cells];
+    this.heap = new long[64];
+    this.heapSize = 0;
+    this.stamp = 0;
+  }
+  
+  /**
+   * Returns the number of steps of the shortest path between two cells.
+   * @param origin int id of the cell where the search starts.
+   * @param destination int id of the cell the search is heading to.
+   * @param heuristic lower bound estimate of the remaining distance.
+   * @return int with the distance between both cells, or DistanceEngine.UNREACHABLE.
+   * @throws IllegalArgumentException when a cell is outside of the grid or heuristic is null
+   */
+  public int search(int origin, int destination, DistanceHeuristic heuristic) 
+      throws IllegalArgumentException {
+    int cells = this.costs.length;
+    if (origin < 0 || origin >= cells || destination < 0 || destination >= cells) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+    if (heuristic == null) {
+      throw new IllegalArgumentException("Heuristic cannot be null.");
+    }
+    int firstEstimate = heuristic.estimate(origin, destination);
+    if (firstEstimate == DistanceEngine.UNREACHABLE) {
+      return DistanceEngine.UNREACHABLE;
+    }
+    this.stamp++;
+    this.heapSize = 0;
+    this.costs[origin] = 0;
+    this.parents[origin] = -1;
+    this.openStamps[origin] = this.stamp;
+    this.push(firstEstimate, origin);
+    
+    while (this.heapSize > 0) {
+      int cell = (int) this.pop();
+      if (this.closedStamps[cell] == this.stamp) {
+        // Stale heap entry of a cell already expanded with a lower cost.
+        continue;
+      }
+      if (cell == destination) {
+        return this.costs[cell];
+      }
+      this.closedStamps[cell] = this.stamp;
+      int next = this.costs[cell] + 1;
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = this.grid.getNeighbour(cell, dir);
+        if (neighbour == -1 || this.closedStamps[neighbour] == this.stamp) {
+          continue;
+        }
+        if (this.openStamps[neighbour] != this.stamp || next < this.costs[neighbour]) {
+          int estimate = heuristic.estimate(neighbour, destination);
+          if (estimate == DistanceEngine.UNREACHABLE) {
+            continue;
+          }
+          this.openStamps[neighbour] = this.stamp;
+          this.costs[neighbour] = next;
+          this.parents[neighbour] = cell;
+          this.push(next + estimate, neighbour);
+        }
+      }
+    }
+    return DistanceEngine.UNREACHABLE;
+  }
+  
+  /**
+   * Returns the cells of a shortest path between two cells.
+   * @param origin int id of the cell where the path starts.
+   * @param destination int id of the cell where the path ends.
+   * @param heuristic lower bound estimate of the remaining distance.
+   * @return array with the cells of the path, both ends included, or an empty array
+   *     if destination is unreachable.
+   * @throws IllegalArgumentException when a cell is outside of the grid or heuristic is null
+   */
+  public int[] findPath(int origin, int destination, DistanceHeuristic heuristic) 
+      throws IllegalArgumentException {
+    int distance = this.search(origin, destination, heuristic);
+    if (distance == DistanceEngine.UNREACHABLE) {
+      return new int[0];
+    }
+    int[] path = new int[distance + 1];
+    int cell = destination;
+    for (int i = distance; i >= 0; i--) {
+      path[i] = cell;
+      cell = this.parents[cell];
+    }
+    return path;
+  }
+  
+  /**
+   * Helper that adds a cell to the open heap, ordered by its estimated total cost.
+   * @param priority int with the estimated total cost through the cell.
+   * @param cell int id of the cell.
+   */
+  private void push(int priority, int cell) {
+    if (this.heapSize == this.heap.length) {
+      this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+    }
+    long entry = ((long) priority << 32) | cell;
+    int i = this.heapSize++;
+    while (i > 0) {
+      int up = (i - 1) >>> 1;
+      if (this.heap[up] <= entry) {
+        break;
+      }
+      this.heap[i] = this.heap[up];
+      i = up;
+    }
+    this.heap[i] = entry;
+  }
+  
+  /**
+   * Helper that removes the entry with the lowest estimated total cost.
+   * @return long with the removed entry, whose low 32 bits are the cell id.
+   */
+  private long pop() {
+    long top = this.heap[0];
+    long last = this.heap[--this.heapSize];
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= this.heapSize) {
+        break;
+      }
+      if (child + 1 < this.heapSize && this.heap[child + 1] < this.heap[child]) {
+        child++;
+      }
+      if (last <= this.heap[child]) {
+        break;
+      }
+      this.heap[i] = this.heap[child];
+      i = child;
+    }
+    this.heap[i] = last;
+    return top & 0xFFFFFFFFL;
+  }
+
+}
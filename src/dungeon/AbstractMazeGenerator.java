@@ -0,0 +1,80 @@
+package dungeon;
+
+import java.util.Random;
+
+/**
+ * Abstract class holding the behaviour shared by the serial maze generators. It
+ * validates the size of the dungeon, prepares an empty grid and the pseudorandom
+ * series, and knows which cells are neighbours depending on the dungeon being
+ * wrapped or not.
+ *
+ */
+public abstract class AbstractMazeGenerator implements MazeGenerator {
+  
+  protected static final Direction[] DIRECTIONS = Direction.values();
+  
+  @Override
+  public ConnectionGrid generate(int rows, int columns, boolean wrapped, long seed) 
+      throws IllegalArgumentException {
+    if (rows < 1 || columns < 1) {
+      throw new IllegalArgumentException("Columns or rows must be positive.");
+    }
+    ConnectionGrid grid = new ConnectionGridImpl(rows, columns);
+    this.carve(grid, wrapped, new Random(seed));
+    return grid;
+  }
+  
+  /**
+   * Connects the cells of an empty grid forming a spanning tree.
+   * @param grid connection grid without connections.
+   * @param wrapped boolean that indicates if connections can wrap around the edges.
+   * @param random pseudorandom series of the generator.
+   */
+  protected abstract void carve(ConnectionGrid grid, boolean wrapped, Random random);
+  
+  /**
+   * Returns the neighbour of a cell that could be connected in a direction.
+   * @param grid connection grid of the dungeon.
+   * @param wrapped boolean that indicates if connections can wrap around the edges.
+   * @param cell int id of the cell.
+   * @param dir Direction of the neighbour.
+   * @return int id of the neighbour, or -1 if there is none that way.
+   */
+  protected static int getNeighbour(ConnectionGrid grid, boolean wrapped, int cell, 
+      Direction dir) {
+    int rows = grid.getRows();
+    int columns = grid.getColumns();
+    int row = cell / columns;
+    int col = cell % columns;
+    switch (dir) {
+      case NORTH:
+        row = (row == 0) ? (wrapped ? rows - 1 : -1) : row - 1;
+        break;
+      case SOUTH:
+        row = (row == rows - 1) ? (wrapped ? 0 : -1) : row + 1;
+        break;
+      case EAST:
+        col = (col == columns - 1) ? (wrapped ? 0 : -1) : col + 1;
+        break;
+      default:
+        col = (col == 0) ? (wrapped ? columns - 1 : -1) : col - 1;
+    }
+    if (row == -1 || col == -1 || row * columns + col == cell) {
+      return -1;
+    }
+    return row * columns + col;
+  }
+  
+  /**
+   * Connects two neighbour cells in both senses.
+   * @param grid connection grid of the dungeon.
+   * @param a int id of one of the cells.
+   * @param b int id of the other cell.
+   */
+  protected static void connect(ConnectionGrid grid, int a, int b) {
+    int columns = grid.getColumns();
+    grid.addConnection(a / columns, a % columns, b / columns, b % columns);
+    grid.addConnection(b / columns, b % columns, a / columns, a % columns);
+  }
+
+}
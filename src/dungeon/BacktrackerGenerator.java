@@ -0,0 +1,45 @@
+package dungeon;
+
+import java.util.Random;
+
+/**
+ * Maze generator based on a depth first search that backtracks when it gets stuck.
+ * The search runs over an explicit stack, so huge grids cannot overflow the call
+ * stack. Mazes have long winding corridors and few dead ends, which means more
+ * tunnels than the other generators.
+ *
+ */
+public class BacktrackerGenerator extends AbstractMazeGenerator {
+  
+  @Override
+  protected void carve(ConnectionGrid grid, boolean wrapped, Random random) {
+    int cells = grid.getCellCount();
+    boolean[] visited = new boolean[cells];
+    int[] stack = new int[cells];
+    int[] options = new int[4];
+    int top = 0;
+    stack[0] = random.nextInt(cells);
+    visited[stack[0]] = true;
+    
+    while (top >= 0) {
+      int cell = stack[top];
+      int count = 0;
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = getNeighbour(grid, wrapped, cell, dir);
+        if (neighbour != -1 && !visited[neighbour]) {
+          options[count++] = neighbour;
+        }
+      }
+      if (count == 0) {
+        top--;
+      }
+      else {
+        int neighbour = options[random.nextInt(count)];
+        visited[neighbour] = true;
+        connect(grid, cell, neighbour);
+        stack[++top] = neighbour;
+      }
+    }
+  }
+
+}
@@ -0,0 +1,107 @@
+package dungeon;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * All pairs distance engine that runs one breadth first search per source cell.
+ * As every cell has at most four connections, building the whole table costs
+ * O(V * E) instead of the O(V^3) of Floyd-Warshall.
+ * The searches are independent, so they can also be split across the workers of a
+ * fork join pool. Every source row is written by a single task, so the table is
+ * identical to the one built serially.
+ *
+ */
+public class BfsDistanceEngine implements DistanceEngine {
+  
+  private static final int SOURCES_PER_TASK = 64;
+  private final int[][] distances;
+  
+  /**
+   * Constructor that computes the distances between every pair of cells of the grid
+   * in the calling thread.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @throws IllegalArgumentException when grid is null
+   */
+  public BfsDistanceEngine(ConnectionGrid grid) throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    int cells = grid.getCellCount();
+    BreadthFirstSearch search = new BreadthFirstSearch(grid);
+    this.distances = new int[cells][cells];
+    for (int source = 0; source < cells; source++) {
+      search.run(source, this.distances[source]);
+    }
+  }
+  
+  /**
+   * Constructor that computes the distances between every pair of cells of the grid,
+   * splitting the sources across the workers of a pool.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @param pool fork join pool that runs the searches.
+   * @throws IllegalArgumentException when grid or pool are null
+   */
+  public BfsDistanceEngine(ConnectionGrid grid, ForkJoinPool pool) 
+      throws IllegalArgumentException {
+    if (grid == null || pool == null) {
+      throw new IllegalArgumentException("Grid and pool cannot be null.");
+    }
+    int cells = grid.getCellCount();
+    this.distances = new int[cells][cells];
+    pool.invoke(new SourceRangeTask(grid, this.distances, 0, cells));
+  }
+  
+  @Override
+  public int getDistance(int origin, int destination) throws IllegalArgumentException {
+    if (origin < 0 || origin >= this.distances.length 
+        || destination < 0 || destination >= this.distances.length) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+    return this.distances[origin][destination];
+  }
+  
+  /**
+   * Fork join task that fills the distance rows of a range of sources, splitting
+   * it in halves until it is small enough to be run directly. Each leaf task reuses a
+   * single search, and its queue buffer, for all of its sources.
+   */
+  private static class SourceRangeTask extends RecursiveAction {
+    
+    private static final long serialVersionUID = 1L;
+    private final transient ConnectionGrid grid;
+    private final int[][] distances;
+    private final int from;
+    private final int to;
+    
+    /**
+     * Constructor of the task for sources in [from, to).
+     * @param grid connection grid with the final connections of the dungeon.
+     * @param distances table where rows are written.
+     * @param from int id of the first source.
+     * @param to int id after the last source.
+     */
+    SourceRangeTask(ConnectionGrid grid, int[][] distances, int from, int to) {
+      this.grid = grid;
+      this.distances = distances;
+      this.from = from;
+      this.to = to;
+    }
+    
+    @Override
+    protected void compute() {
+      if (this.to - this.from <= SOURCES_PER_TASK) {
+        BreadthFirstSearch search = new BreadthFirstSearch(this.grid);
+        for (int source = this.from; source < this.to; source++) {
+          search.run(source, this.distances[source]);
+        }
+      }
+      else {
+        int middle = (this.from + this.to) >>> 1;
+        invokeAll(new SourceRangeTask(this.grid, this.distances, this.from, middle),
+            new SourceRangeTask(this.grid, this.distances, middle, this.to));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+package dungeon;
+
+import java.util.Arrays;
+
+/**
+ * Dense all pairs distance engine for highly interconnected dungeons. It runs
+ * Floyd-Warshall over a single flat V x V matrix, processed in square tiles so the
+ * three tiles involved in each update stay in cache. Inside a tile the innermost loop
+ * is a plain min-plus sweep over contiguous rows, which the JIT compiles to SIMD
+ * instructions where the hardware supports them.
+ *
+ */
+public class BlockedFloydWarshallDistanceEngine implements DistanceEngine {
+  
+  private static final int DEFAULT_TILE = 64;
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private final int cells;
+  private final int[] distances;
+  
+  /**
+   * Constructor that computes the distances between every pair of cells of the grid
+   * with the default tile size.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @throws IllegalArgumentException when grid is null or too big for a flat matrix
+   */
+  public BlockedFloydWarshallDistanceEngine(ConnectionGrid grid) 
+      throws IllegalArgumentException {
+    this(grid, DEFAULT_TILE);
+  }
+  
+  /**
+   * Constructor that computes the distances between every pair of cells of the grid.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @param tile int with the side of the square tiles the matrix is processed in.
+   * @throws IllegalArgumentException when grid is null, too big for a flat matrix or 
+   *     tile is non positive
+   */
+  public BlockedFloydWarshallDistanceEngine(ConnectionGrid grid, int tile) 
+      throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    if (tile < 1) {
+      throw new IllegalArgumentException("Tile size has to be positive.");
+    }
+    if ((long) grid.getCellCount() * grid.getCellCount() > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Grid is too big for a dense distance matrix.");
+    }
+    this.cells = grid.getCellCount();
+    this.distances = new int[this.cells * this.cells];
+    this.initialize(grid);
+    this.calculateShortestDistances(tile);
+  }
+  
+  @Override
+  public int getDistance(int origin, int destination) throws IllegalArgumentException {
+    if (origin < 0 || origin >= this.cells || destination < 0 || destination >= this.cells) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+    return this.distances[origin * this.cells + destination];
+  }
+  
+  /**
+   * Helper method that sets the direct connections and the zero diagonal of the matrix.
+   * @param grid connection grid with the final connections of the dungeon.
+   */
+  private void initialize(ConnectionGrid grid) {
+    Arrays.fill(this.distances, UNREACHABLE);
+    for (int cell = 0; cell < this.cells; cell++) {
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = grid.getNeighbour(cell, dir);
+        if (neighbour != -1) {
+          this.distances[cell * this.cells + neighbour] = 1;
+        }
+      }
+      this.distances[cell * this.cells + cell] = 0;
+    }
+  }
+  
+  /**
+   * Blocked Floyd-Warshall. For every diagonal tile, the tile itself is closed first,
+   * then the tiles sharing its row and column, and finally all remaining tiles, which
+   * only depend on the two already updated panels.
+   * @param tile int with the side of the square tiles.
+   */
+  private void calculateShortestDistances(int tile) {
+    for (int kStart = 0; kStart < this.cells; kStart += tile) {
+      int kEnd = Math.min(kStart + tile, this.cells);
+      
+      // Phase one, the diagonal tile.
+      this.updateTile(kStart, kEnd, kStart, kEnd, kStart, kEnd);
+      
+      // Phase two, tiles in the same row and column as the diagonal one.
+      for (int start = 0; start < this.cells; start += tile) {
+        int end = Math.min(start + tile, this.cells);
+        if (start != kStart) {
+          this.updateTile(kStart, kEnd, start, end, kStart, kEnd);
+          this.updateTile(start, end, kStart, kEnd, kStart, kEnd);
+        }
+      }
+      
+      // Phase three, every other tile.
+      for (int iStart = 0; iStart < this.cells; iStart += tile) {
+        if (iStart == kStart) {
+          continue;
+        }
+        int iEnd = Math.min(iStart + tile, this.cells);
+        for (int jStart = 0; jStart < this.cells; jStart += tile) {
+          if (jStart == kStart) {
+            continue;
+          }
+          int jEnd = Math.min(jStart + tile, this.cells);
+          this.updateTile(iStart, iEnd, jStart, jEnd, kStart, kEnd);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Helper that relaxes the tile [iStart, iEnd) x [jStart, jEnd) through the
+   * intermediate nodes [kStart, kEnd), keeping the intermediate loop outermost.
+   * @param iStart int first origin of the tile.
+   * @param iEnd int after the last origin of the tile.
+   * @param jStart int first destination of the tile.
+   * @param jEnd int after the last destination of the tile.
+   * @param kStart int first intermediate node.
+   * @param kEnd int after the last intermediate node.
+   */
+  private void updateTile(int iStart, int iEnd, int jStart, int jEnd, int kStart, int kEnd) {
+    int[] dist = this.distances;
+    int n = this.cells;
+    for (int k = kStart; k < kEnd; k++) {
+      int kRow = k * n;
+      for (int i = iStart; i < iEnd; i++) {
+        int iRow = i * n;
+        int viaK = dist[iRow + k];
+        if (viaK == UNREACHABLE) {
+          continue;
+        }
+        // Min-plus sweep over contiguous memory, the part the JIT vectorizes.
+        for (int j = jStart; j < jEnd; j++) {
+          dist[iRow + j] = Math.min(dist[iRow + j], viaK + dist[kRow + j]);
+        }
+      }
+    }
+  }
+
+}
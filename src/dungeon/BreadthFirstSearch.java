@@ -0,0 +1,68 @@
+package dungeon;
+
+import java.util.Arrays;
+
+/**
+ * Single source breadth first search over a connection grid. As the dungeon is an
+ * unweighted graph, the level in which a cell is reached is its shortest distance
+ * to the source. The queue buffer is kept between runs, so one instance can be
+ * reused for many sources without allocating.
+ * Instances are not thread safe, concurrent searches need one instance each.
+ *
+ */
+public class BreadthFirstSearch {
+  
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private final ConnectionGrid grid;
+  private final int[] queue;
+  
+  /**
+   * Constructor of the search over a given grid.
+   * @param grid connection grid to be traversed.
+   * @throws IllegalArgumentException when grid is null
+   */
+  public BreadthFirstSearch(ConnectionGrid grid) throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    this.grid = grid;
+    this.queue = new int[grid.getCellCount()];
+  }
+  
+  /**
+   * Fills the distance of every cell to the source. Cells that cannot be reached
+   * are set to DistanceEngine.UNREACHABLE.
+   * @param source int id of the source cell.
+   * @param distances array with one position per cell where results are written.
+   * @return int with the number of cells reached, including the source.
+   * @throws IllegalArgumentException when source is outside of the grid or distances
+   *     is smaller than the grid
+   */
+  public int run(int source, int[] distances) throws IllegalArgumentException {
+    if (source < 0 || source >= this.queue.length) {
+      throw new IllegalArgumentException("Source is outside of the grid.");
+    }
+    if (distances == null || distances.length < this.queue.length) {
+      throw new IllegalArgumentException("Distances need one position per cell.");
+    }
+    Arrays.fill(distances, 0, this.queue.length, DistanceEngine.UNREACHABLE);
+    distances[source] = 0;
+    this.queue[0] = source;
+    int head = 0;
+    int tail = 1;
+    
+    while (head < tail) {
+      int cell = this.queue[head++];
+      int next = distances[cell] + 1;
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = this.grid.getNeighbour(cell, dir);
+        if (neighbour != -1 && distances[neighbour] == DistanceEngine.UNREACHABLE) {
+          distances[neighbour] = next;
+          this.queue[tail++] = neighbour;
+        }
+      }
+    }
+    return tail;
+  }
+
+}
@@ -0,0 +1,70 @@
+package dungeon;
+
+/**
+ * Enum with the phases of the construction of a dungeon, the stages of its build
+ * pipeline. A phase only waits for the ones whose results it uses, so independent
+ * phases can run at the same time.
+ *
+ */
+public enum BuildPhase {
+  
+  /**
+   * Generation of the spanning tree of the maze.
+   */
+  MAZE,
+  
+  /**
+   * Enumeration of the potential edges between neighbour locations.
+   */
+  EDGES,
+  
+  /**
+   * Selection of the edges of the tree and the extra ones of the interconnectivity.
+   */
+  KRUSKAL,
+  
+  /**
+   * Construction of the final connection grid.
+   */
+  CONNECTIONS,
+  
+  /**
+   * Contraction of the tunnels into the cave graph.
+   */
+  CAVE_GRAPH,
+  
+  /**
+   * Creation of the caves and tunnels.
+   */
+  LOCATIONS,
+  
+  /**
+   * Preparation of the shortest path engines.
+   */
+  DISTANCES,
+  
+  /**
+   * Sampling of the cells that get treasures and arrows.
+   */
+  ITEMS,
+  
+  /**
+   * Selection of the start and finish locations.
+   */
+  START_FINISH,
+  
+  /**
+   * Placement of the treasures in their caves.
+   */
+  TREASURES,
+  
+  /**
+   * Placement of the monsters.
+   */
+  MONSTERS,
+  
+  /**
+   * Placement of the arrows in their locations.
+   */
+  ARROWS
+}
@@ -0,0 +1,178 @@
+package dungeon;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Pipeline that runs the phases of the construction of a dungeon as a dependency
+ * graph on an executor. Every phase starts as soon as the phases it depends on are
+ * done, so independent phases run concurrently. Each phase draws from its own random
+ * stream, so the result does not depend on the order in which they run.
+ * For every phase the pipeline records how long it ran and its critical path, the
+ * longest chain of durations from the start of the construction to its end. The
+ * critical path of the last phases bounds the construction time however many threads
+ * the executor has. Phases must be added by a single thread, after the phases they
+ * depend on.
+ *
+ */
+public class BuildPipeline {
+  
+  private static final BuildPhase[] PHASES = BuildPhase.values();
+  private final Executor executor;
+  private final Map<BuildPhase, CompletableFuture<?>> stages;
+  private final AtomicLongArray durations;
+  private final AtomicLongArray criticalPaths;
+  
+  /**
+   * Constructor of the pipeline.
+   * @param executor executor that runs the phases.
+   * @throws IllegalArgumentException when executor is null
+   */
+  public BuildPipeline(Executor executor) throws IllegalArgumentException {
+    if (executor == null) {
+      throw new IllegalArgumentException("Executor cannot be null.");
+    }
+    this.executor = executor;
+    this.stages = new EnumMap<>(BuildPhase.class);
+    this.durations = new AtomicLongArray(PHASES.length);
+    this.criticalPaths = new AtomicLongArray(PHASES.length);
+  }
+  
+  /**
+   * Adds a phase that runs once its dependencies are done.
+   * @param <T> type of the result of the phase.
+   * @param phase phase being added.
+   * @param task computation of the phase, which can read the results of its
+   *     dependencies as they are already done.
+   * @param dependencies phases whose results are used by the task.
+   * @return future with the result of the phase.
+   * @throws IllegalArgumentException when phase or task are null, the phase was already
+   *     added or a dependency was not added before
+   */
+  public <T> CompletableFuture<T> stage(BuildPhase phase, Supplier<T> task, 
+      BuildPhase... dependencies) throws IllegalArgumentException {
+    if (phase == null || task == null) {
+      throw new IllegalArgumentException("Phase and task cannot be null.");
+    }
+    if (this.stages.containsKey(phase)) {
+      throw new IllegalArgumentException("Phase " + phase + " was already added.");
+    }
+    BuildPhase[] before = dependencies.clone();
+    CompletableFuture<?>[] waits = new CompletableFuture<?>[before.length];
+    for (int i = 0; i < before.length; i++) {
+      waits[i] = this.stages.get(before[i]);
+      if (waits[i] == null) {
+        throw new IllegalArgumentException("Phase " + before[i] + " must be added before " 
+            + phase + ".");
+      }
+    }
+    
+    CompletableFuture<T> future = CompletableFuture.allOf(waits).thenApplyAsync(done -> {
+      long start = System.nanoTime();
+      T result = task.get();
+      long duration = System.nanoTime() - start;
+      long longest = 0;
+      for (BuildPhase dependency : before) {
+        longest = Math.max(longest, this.criticalPaths.get(dependency.ordinal()));
+      }
+      this.durations.set(phase.ordinal(), duration);
+      this.criticalPaths.set(phase.ordinal(), longest + duration);
+      return result;
+    }, this.executor);
+    this.stages.put(phase, future);
+    return future;
+  }
+  
+  /**
+   * Waits for a phase and returns its result. If the phase failed, every phase that
+   * has not started yet is cancelled before the failure is rethrown, while the ones
+   * already running finish on their own.
+   * @param <T> type of the result of the phase.
+   * @param future future returned when the phase was added.
+   * @return result of the phase.
+   * @throws RuntimeException the exception thrown by the phase, or by the first of
+   *     its dependencies that failed
+   */
+  public <T> T await(CompletableFuture<T> future) throws RuntimeException {
+    try {
+      return future.join();
+    }
+    catch (CompletionException | CancellationException e) {
+      this.cancel();
+      Throwable cause = e;
+      while (cause instanceof CompletionException && cause.getCause() != null) {
+        cause = cause.getCause();
+      }
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Dungeon construction failed.", cause);
+    }
+  }
+  
+  /**
+   * Cancels every phase that has not finished. Phases already running are not
+   * interrupted, but the ones waiting for them or for the executor never start.
+   */
+  public void cancel() {
+    for (CompletableFuture<?> stage : this.stages.values()) {
+      stage.cancel(false);
+    }
+  }
+  
+  /**
+   * Getter of the time a phase ran.
+   * @param phase phase of the construction.
+   * @return long with the nanoseconds it ran, or 0 if it has not finished.
+   */
+  public long getDuration(BuildPhase phase) {
+    return this.durations.get(phase.ordinal());
+  }
+  
+  /**
+   * Getter of the critical path of a phase, the longest chain of phase durations
+   * through its dependencies that ends with it.
+   * @param phase phase of the construction.
+   * @return long with the nanoseconds of the chain, or 0 if it has not finished.
+   */
+  public long getCriticalPath(BuildPhase phase) {
+    return this.criticalPaths.get(phase.ordinal());
+  }
+  
+  /**
+   * Getter of the critical path of the whole construction.
+   * @return long with the nanoseconds of the longest chain of phase durations.
+   */
+  public long getCriticalPath() {
+    long longest = 0;
+    for (BuildPhase phase : PHASES) {
+      longest = Math.max(longest, this.getCriticalPath(phase));
+    }
+    return longest;
+  }
+  
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder();
+    builder.append(String.format(Locale.ROOT, "%-14s %12s %12s%n", 
+        "phase", "time(ms)", "critical(ms)"));
+    for (BuildPhase phase : PHASES) {
+      if (this.stages.containsKey(phase)) {
+        builder.append(String.format(Locale.ROOT, "%-14s %12.3f %12.3f%n", phase, 
+            this.getDuration(phase) / 1e6, this.getCriticalPath(phase) / 1e6));
+      }
+    }
+    return builder.toString();
+  }
+
+}
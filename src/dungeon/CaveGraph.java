@@ -0,0 +1,332 @@
+package dungeon;
+
+import java.util.Arrays;
+
+/**
+ * Contracted view of the dungeon where only caves are nodes. Tunnels have exactly two
+ * exits, so they are pure pass-throughs: every chain of tunnels between two caves
+ * becomes a single edge that carries its number of steps and its ordered tunnel cells.
+ * For every cell and exit direction the graph also keeps the first cave reached going
+ * that way, so walking along tunnels never needs to be done one cell at a time.
+ * Tunnels forming a ring without caves are kept as chains with no cave at their ends.
+ *
+ */
+public class CaveGraph {
+  
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private final ConnectionGrid grid;
+  private final int[] caves;
+  private final int[] caveIndex;
+  private final int[] jumpTargets;
+  private final int[] jumpSteps;
+  private final byte[] jumpArrivals;
+  private final int[] tunnelStarts;
+  private final int[] tunnelCells;
+  private final int[] chains;
+  private final int[] chainPositions;
+  private int[] chainLengths;
+  private boolean[] chainRings;
+  private int chainCount;
+  
+  /**
+   * Constructor that contracts the tunnels of a grid.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @throws IllegalArgumentException when grid is null
+   */
+  public CaveGraph(ConnectionGrid grid) throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    int cells = grid.getCellCount();
+    this.grid = grid;
+    this.caveIndex = new int[cells];
+    int caveCount = 0;
+    for (int cell = 0; cell < cells; cell++) {
+      if (grid.getDegree(cell) != 2) {
+        this.caveIndex[cell] = caveCount++;
+      }
+      else {
+        this.caveIndex[cell] = -1;
+      }
+    }
+    this.caves = new int[caveCount];
+    for (int cell = 0; cell < cells; cell++) {
+      if (this.caveIndex[cell] != -1) {
+        this.caves[this.caveIndex[cell]] = cell;
+      }
+    }
+    
+    this.jumpTargets = new int[cells * 4];
+    this.jumpSteps = new int[cells * 4];
+    this.jumpArrivals = new byte[cells * 4];
+    this.tunnelStarts = new int[cells * 4];
+    Arrays.fill(this.jumpTargets, -1);
+    Arrays.fill(this.tunnelStarts, -1);
+    this.chains = new int[cells];
+    this.chainPositions = new int[cells];
+    Arrays.fill(this.chains, -1);
+    this.chainLengths = new int[16];
+    this.chainRings = new boolean[16];
+    this.chainCount = 0;
+    
+    // Every chain is walked once from each of its ends, so tunnel cells are stored twice.
+    int tunnels = cells - caveCount;
+    this.tunnelCells = new int[2 * tunnels];
+    int used = 0;
+    for (int cave : this.caves) {
+      for (Direction dir : DIRECTIONS) {
+        if (grid.getNeighbour(cave, dir) != -1) {
+          used = this.walkChain(cave, dir, used);
+        }
+      }
+    }
+    for (int cell = 0; cell < cells; cell++) {
+      if (this.caveIndex[cell] == -1 && this.chains[cell] == -1) {
+        this.markRing(cell);
+      }
+    }
+  }
+  
+  /**
+   * Returns the number of caves of the dungeon.
+   * @return int with the number of caves.
+   */
+  public int getCaveCount() {
+    return this.caves.length;
+  }
+  
+  /**
+   * Returns the cell of a cave given its dense index.
+   * @param index int between 0 and the number of caves.
+   * @return int id of the cave's cell.
+   */
+  public int getCave(int index) {
+    return this.caves[index];
+  }
+  
+  /**
+   * Returns the dense index of a cave.
+   * @param cell int id of the cell.
+   * @return int index of the cave, or -1 if the cell is a tunnel.
+   */
+  public int getCaveIndex(int cell) {
+    return this.caveIndex[cell];
+  }
+  
+  /**
+   * Checks if a cell is a cave, any cell that does not have exactly two exits.
+   * @param cell int id of the cell.
+   * @return true if the cell is a cave.
+   */
+  public boolean isCave(int cell) {
+    return this.caveIndex[cell] != -1;
+  }
+  
+  /**
+   * Returns the first cave reached leaving a cell through one of its exits and
+   * following every tunnel on the way.
+   * @param cell int id of the cell where the walk starts.
+   * @param dir Direction of the exit taken.
+   * @return int id of the cave reached, or -1 if there is no exit that way or the
+   *     tunnels form a ring without caves.
+   */
+  public int getJumpTarget(int cell, Direction dir) {
+    return this.jumpTargets[cell * 4 + dir.ordinal()];
+  }
+  
+  /**
+   * Returns the number of steps of the walk described in getJumpTarget.
+   * @param cell int id of the cell where the walk starts.
+   * @param dir Direction of the exit taken.
+   * @return int with the number of steps, or 0 if no cave is reached.
+   */
+  public int getJumpSteps(int cell, Direction dir) {
+    return this.jumpSteps[cell * 4 + dir.ordinal()];
+  }
+  
+  /**
+   * Returns the direction of the last step of the walk described in getJumpTarget,
+   * that is, the direction of movement when entering the cave.
+   * @param cell int id of the cell where the walk starts.
+   * @param dir Direction of the exit taken.
+   * @return Direction of the last step, or null if no cave is reached.
+   */
+  public Direction getJumpArrival(int cell, Direction dir) {
+    if (this.jumpTargets[cell * 4 + dir.ordinal()] == -1) {
+      return null;
+    }
+    return DIRECTIONS[this.jumpArrivals[cell * 4 + dir.ordinal()]];
+  }
+  
+  /**
+   * Returns the tunnels of the edge leaving a cave through one of its exits.
+   * @param cave int id of the cave's cell.
+   * @param dir Direction of the exit taken.
+   * @return array with the tunnel cells in the order they are crossed.
+   * @throws IllegalArgumentException when the cell is not a cave or has no exit that way
+   */
+  public int[] getTunnels(int cave, Direction dir) throws IllegalArgumentException {
+    if (!this.isCave(cave) || this.jumpTargets[cave * 4 + dir.ordinal()] == -1) {
+      throw new IllegalArgumentException("There is no edge leaving the cave that way.");
+    }
+    int start = this.tunnelStarts[cave * 4 + dir.ordinal()];
+    int steps = this.jumpSteps[cave * 4 + dir.ordinal()];
+    return Arrays.copyOfRange(this.tunnelCells, start, start + steps - 1);
+  }
+  
+  /**
+   * Returns the chain a tunnel belongs to.
+   * @param cell int id of the cell.
+   * @return int id of the chain, or -1 if the cell is a cave.
+   */
+  public int getChain(int cell) {
+    return this.chains[cell];
+  }
+  
+  /**
+   * Returns the position of a tunnel inside its chain, starting at 0.
+   * @param cell int id of the tunnel.
+   * @return int with the position of the tunnel.
+   */
+  public int getChainPosition(int cell) {
+    return this.chainPositions[cell];
+  }
+  
+  /**
+   * Returns the number of tunnels of a chain.
+   * @param chain int id of the chain.
+   * @return int with the number of tunnels.
+   */
+  public int getChainLength(int chain) {
+    return this.chainLengths[chain];
+  }
+  
+  /**
+   * Checks if a chain is a ring of tunnels without any cave.
+   * @param chain int id of the chain.
+   * @return true if the chain is a ring.
+   */
+  public boolean isRing(int chain) {
+    return this.chainRings[chain];
+  }
+  
+  /**
+   * Returns the opposite of a direction.
+   * @param dir Direction to be reversed.
+   * @return the opposite Direction.
+   */
+  public static Direction opposite(Direction dir) {
+    switch (dir) {
+      case NORTH:
+        return Direction.SOUTH;
+      case SOUTH:
+        return Direction.NORTH;
+      case EAST:
+        return Direction.WEST;
+      default:
+        return Direction.EAST;
+    }
+  }
+  
+  /**
+   * Helper that walks the tunnels leaving a cave through an exit until a cave is
+   * reached, storing the edge of the cave and the jump of every tunnel crossed
+   * towards that same cave.
+   * @param cave int id of the cave where the walk starts.
+   * @param dir Direction of the exit taken.
+   * @param used int with the positions of tunnelCells already filled.
+   * @return int with the positions of tunnelCells filled after this walk.
+   */
+  private int walkChain(int cave, Direction dir, int used) {
+    int start = used;
+    int cell = this.grid.getNeighbour(cave, dir);
+    Direction moving = dir;
+    while (!this.isCave(cell)) {
+      this.tunnelCells[used++] = cell;
+      moving = this.getOtherExit(cell, moving);
+      cell = this.grid.getNeighbour(cell, moving);
+    }
+    int steps = used - start + 1;
+    this.jumpTargets[cave * 4 + dir.ordinal()] = cell;
+    this.jumpSteps[cave * 4 + dir.ordinal()] = steps;
+    this.jumpArrivals[cave * 4 + dir.ordinal()] = (byte) moving.ordinal();
+    this.tunnelStarts[cave * 4 + dir.ordinal()] = start;
+    
+    int chain = -1;
+    if (used > start && this.chains[this.tunnelCells[start]] == -1) {
+      chain = this.newChain(used - start, false);
+    }
+    
+    // Every tunnel crossed, towards the end of the walk, reaches the same cave.
+    Direction towards = dir;
+    for (int i = start; i < used; i++) {
+      int tunnel = this.tunnelCells[i];
+      towards = this.getOtherExit(tunnel, towards);
+      this.jumpTargets[tunnel * 4 + towards.ordinal()] = cell;
+      this.jumpSteps[tunnel * 4 + towards.ordinal()] = used - i;
+      this.jumpArrivals[tunnel * 4 + towards.ordinal()] = (byte) moving.ordinal();
+      if (chain != -1) {
+        this.chains[tunnel] = chain;
+        this.chainPositions[tunnel] = i - start;
+      }
+    }
+    return used;
+  }
+  
+  /**
+   * Helper that registers a ring of tunnels with no caves, starting from one of them.
+   * @param first int id of a tunnel of the ring.
+   */
+  private void markRing(int first) {
+    int chain = this.newChain(0, true);
+    int cell = first;
+    Direction moving = null;
+    for (Direction dir : DIRECTIONS) {
+      if (this.grid.getNeighbour(first, dir) != -1) {
+        moving = dir;
+        break;
+      }
+    }
+    int length = 0;
+    while (this.chains[cell] == -1) {
+      this.chains[cell] = chain;
+      this.chainPositions[cell] = length++;
+      cell = this.grid.getNeighbour(cell, moving);
+      moving = this.getOtherExit(cell, moving);
+    }
+    this.chainLengths[chain] = length;
+  }
+  
+  /**
+   * Helper that creates a new chain.
+   * @param length int with the number of tunnels of the chain.
+   * @param ring true if the chain is a ring without caves.
+   * @return int id of the new chain.
+   */
+  private int newChain(int length, boolean ring) {
+    if (this.chainCount == this.chainLengths.length) {
+      this.chainLengths = Arrays.copyOf(this.chainLengths, this.chainCount * 2);
+      this.chainRings = Arrays.copyOf(this.chainRings, this.chainCount * 2);
+    }
+    this.chainLengths[this.chainCount] = length;
+    this.chainRings[this.chainCount] = ring;
+    return this.chainCount++;
+  }
+  
+  /**
+   * Helper that returns the exit of a tunnel that was not used to enter it.
+   * @param tunnel int id of the tunnel.
+   * @param moving Direction of the movement that entered the tunnel.
+   * @return Direction of the other exit.
+   */
+  private Direction getOtherExit(int tunnel, Direction moving) {
+    Direction entry = opposite(moving);
+    for (Direction dir : DIRECTIONS) {
+      if (dir != entry && this.grid.getNeighbour(tunnel, dir) != -1) {
+        return dir;
+      }
+    }
+    return entry;
+  }
+
+}
@@ -0,0 +1,70 @@
+package dungeon;
+
+import java.util.List;
+
+/**
+ * Interface representing a dungeon without borders, made of square chunks of cells
+ * that are generated only when the player gets close to them. The layout of every
+ * chunk and the doors between neighbour chunks only depend on the seed and the
+ * position of the chunk, so chunks far from the player can be dropped and are built
+ * again exactly the same when the player comes back. Every cell can reach every
+ * other one. Cells are referenced by their row and column, which can be negative.
+ *
+ */
+public interface ChunkedDungeon {
+  
+  /**
+   * Getter of the seed of the dungeon.
+   * @return long with the seed.
+   */
+  public long getSeed();
+  
+  /**
+   * Getter of the number of rows and columns of every chunk.
+   * @return int with the side of the chunks.
+   */
+  public int getChunkSize();
+  
+  /**
+   * Checks if a cell is connected to its neighbour in a direction, generating its
+   * chunk if it is not loaded.
+   * @param row int row of the cell.
+   * @param col int column of the cell.
+   * @param dir direction of the neighbour.
+   * @return true if both cells are connected.
+   * @throws IllegalArgumentException when dir is null
+   */
+  public boolean isConnected(int row, int col, Direction dir) throws IllegalArgumentException;
+  
+  /**
+   * Getter of the directions a cell is connected to, generating its chunk if it is
+   * not loaded.
+   * @param row int row of the cell.
+   * @param col int column of the cell.
+   * @return list with the connected directions.
+   */
+  public List<Direction> getDirections(int row, int col);
+  
+  /**
+   * Moves the player to a cell. The chunks around it are generated, and the ones far
+   * from it are evicted.
+   * @param row int row of the cell.
+   * @param col int column of the cell.
+   */
+  public void moveTo(int row, int col);
+  
+  /**
+   * Checks if a chunk is loaded in memory.
+   * @param chunkRow int row of the chunk.
+   * @param chunkColumn int column of the chunk.
+   * @return true if the chunk is loaded.
+   */
+  public boolean isLoaded(int chunkRow, int chunkColumn);
+  
+  /**
+   * Getter of the number of chunks loaded in memory.
+   * @return int with the number of chunks.
+   */
+  public int getLoadedChunkCount();
+
+}
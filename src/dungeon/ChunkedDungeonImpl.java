@@ -0,0 +1,218 @@
+package dungeon;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Implementation of a dungeon without borders. Every chunk is a maze built by a
+ * generator over its own cells, without wrapping, with a seed derived from the seed
+ * of the dungeon and the position of the chunk. Every chunk also has one door to the
+ * chunk at its east and one to the chunk at its south, in a cell derived the same way,
+ * so both sides of a door agree on it without the other chunk being loaded. As the
+ * mazes connect all the cells of their chunks and the doors connect all the chunks,
+ * every cell can reach every other one.
+ * The chunks within a radius of the player are kept loaded, and the ones more than
+ * one chunk beyond that radius are evicted, so moving along a border does not keep
+ * generating the same chunks. Instances are not thread safe.
+ *
+ */
+public class ChunkedDungeonImpl implements ChunkedDungeon {
+  
+  private static final int EAST_DOOR = 1;
+  private static final int SOUTH_DOOR = 2;
+  private final RandomStreams randomStreams;
+  private final int chunkSize;
+  private final int loadRadius;
+  private final MazeGenerator generator;
+  private final Map<Long, ConnectionGrid> chunks;
+  
+  /**
+   * Constructor of a dungeon whose chunks are built with Wilson's algorithm.
+   * @param seed long that determines the layout of the whole dungeon.
+   * @param chunkSize int with the number of rows and columns of every chunk.
+   * @param loadRadius int with the number of chunks kept loaded around the player
+   *     in every direction.
+   * @throws IllegalArgumentException when chunkSize is not positive or loadRadius
+   *     is negative
+   */
+  public ChunkedDungeonImpl(long seed, int chunkSize, int loadRadius)
+      throws IllegalArgumentException {
+    this(seed, chunkSize, loadRadius, GenerationStrategy.WILSON);
+  }
+  
+  /**
+   * Constructor of the dungeon.
+   * @param seed long that determines the layout of the whole dungeon.
+   * @param chunkSize int with the number of rows and columns of every chunk.
+   * @param loadRadius int with the number of chunks kept loaded around the player
+   *     in every direction.
+   * @param generator maze generator that builds the chunks, which must connect all
+   *     their cells.
+   * @throws IllegalArgumentException when chunkSize is not positive, loadRadius is
+   *     negative or generator is null
+   */
+  public ChunkedDungeonImpl(long seed, int chunkSize, int loadRadius, 
+      MazeGenerator generator) throws IllegalArgumentException {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be positive.");
+    }
+    if (loadRadius < 0) {
+      throw new IllegalArgumentException("Load radius cannot be negative.");
+    }
+    if (generator == null) {
+      throw new IllegalArgumentException("Generator cannot be null.");
+    }
+    this.randomStreams = new RandomStreams(seed);
+    this.chunkSize = chunkSize;
+    this.loadRadius = loadRadius;
+    this.generator = generator;
+    this.chunks = new HashMap<>();
+  }
+  
+  @Override
+  public long getSeed() {
+    return this.randomStreams.getSeed();
+  }
+  
+  @Override
+  public int getChunkSize() {
+    return this.chunkSize;
+  }
+  
+  @Override
+  public boolean isConnected(int row, int col, Direction dir) 
+      throws IllegalArgumentException {
+    if (dir == null) {
+      throw new IllegalArgumentException("Direction cannot be null.");
+    }
+    int chunkRow = Math.floorDiv(row, this.chunkSize);
+    int chunkColumn = Math.floorDiv(col, this.chunkSize);
+    int localRow = Math.floorMod(row, this.chunkSize);
+    int localCol = Math.floorMod(col, this.chunkSize);
+    int last = this.chunkSize - 1;
+    
+    // Steps that leave the chunk can only go through its doors.
+    switch (dir) {
+      case NORTH:
+        if (localRow == 0) {
+          return localCol == this.getDoor(chunkRow - 1, chunkColumn, SOUTH_DOOR);
+        }
+        break;
+      case SOUTH:
+        if (localRow == last) {
+          return localCol == this.getDoor(chunkRow, chunkColumn, SOUTH_DOOR);
+        }
+        break;
+      case EAST:
+        if (localCol == last) {
+          return localRow == this.getDoor(chunkRow, chunkColumn, EAST_DOOR);
+        }
+        break;
+      case WEST:
+        if (localCol == 0) {
+          return localRow == this.getDoor(chunkRow, chunkColumn - 1, EAST_DOOR);
+        }
+        break;
+      default:
+        break;
+    }
+    ConnectionGrid chunk = this.getChunk(chunkRow, chunkColumn);
+    return chunk.getNeighbour(localRow * this.chunkSize + localCol, dir) != -1;
+  }
+  
+  @Override
+  public List<Direction> getDirections(int row, int col) {
+    List<Direction> directions = new ArrayList<>();
+    for (Direction dir : Direction.values()) {
+      if (this.isConnected(row, col, dir)) {
+        directions.add(dir);
+      }
+    }
+    return directions;
+  }
+  
+  @Override
+  public void moveTo(int row, int col) {
+    int chunkRow = Math.floorDiv(row, this.chunkSize);
+    int chunkColumn = Math.floorDiv(col, this.chunkSize);
+    Iterator<Long> keys = this.chunks.keySet().iterator();
+    while (keys.hasNext()) {
+      long key = keys.next();
+      long rowGap = Math.abs((long) (int) (key >> 32) - chunkRow);
+      long columnGap = Math.abs((long) (int) key - chunkColumn);
+      if (Math.max(rowGap, columnGap) > this.loadRadius + 1) {
+        keys.remove();
+      }
+    }
+    for (long r = (long) chunkRow - this.loadRadius; r <= chunkRow + this.loadRadius; r++) {
+      for (long c = (long) chunkColumn - this.loadRadius; 
+          c <= chunkColumn + this.loadRadius; c++) {
+        if (r >= Integer.MIN_VALUE && r <= Integer.MAX_VALUE 
+            && c >= Integer.MIN_VALUE && c <= Integer.MAX_VALUE) {
+          this.getChunk((int) r, (int) c);
+        }
+      }
+    }
+  }
+  
+  @Override
+  public boolean isLoaded(int chunkRow, int chunkColumn) {
+    return this.chunks.containsKey(key(chunkRow, chunkColumn));
+  }
+  
+  @Override
+  public int getLoadedChunkCount() {
+    return this.chunks.size();
+  }
+  
+  /**
+   * Helper that returns the maze of a chunk, generating it if it is not loaded.
+   * @param chunkRow int row of the chunk.
+   * @param chunkColumn int column of the chunk.
+   * @return connection grid with the maze of the chunk, without its doors.
+   */
+  private ConnectionGrid getChunk(int chunkRow, int chunkColumn) {
+    long key = key(chunkRow, chunkColumn);
+    ConnectionGrid chunk = this.chunks.get(key);
+    if (chunk == null) {
+      chunk = this.generator.generate(this.chunkSize, this.chunkSize, false, 
+          this.randomStreams.forChunk(chunkRow, chunkColumn).nextLong());
+      this.chunks.put(key, chunk);
+    }
+    return chunk;
+  }
+  
+  /**
+   * Helper that returns the position of a door of a chunk along its border. The
+   * stream of the chunk gives first the seed of its maze, then its east door and
+   * then its south door.
+   * @param chunkRow int row of the chunk.
+   * @param chunkColumn int column of the chunk.
+   * @param door EAST_DOOR or SOUTH_DOOR.
+   * @return int with the row of the east door or the column of the south door.
+   */
+  private int getDoor(int chunkRow, int chunkColumn, int door) {
+    SplittableRandom random = this.randomStreams.forChunk(chunkRow, chunkColumn);
+    random.nextLong();
+    int position = random.nextInt(this.chunkSize);
+    if (door == SOUTH_DOOR) {
+      position = random.nextInt(this.chunkSize);
+    }
+    return position;
+  }
+  
+  /**
+   * Helper that packs the position of a chunk in a single key.
+   * @param chunkRow int row of the chunk.
+   * @param chunkColumn int column of the chunk.
+   * @return long with the row in the high 32 bits and the column in the low ones.
+   */
+  private static long key(int chunkRow, int chunkColumn) {
+    return ((long) chunkRow << 32) | (chunkColumn & 0xFFFFFFFFL);
+  }
+
+}
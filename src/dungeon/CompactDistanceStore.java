@@ -0,0 +1,319 @@
+package dungeon;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * All pairs distance engine that keeps the table as a flat array of unsigned 16 bit
+ * values outside of the java heap, half the width of an int and free of nested arrays.
+ * The table can live in a direct buffer or be backed by a memory mapped file, so a
+ * table computed once can be reopened by later processes without recomputing it.
+ * The file starts with a header holding the grid size and a fingerprint of its
+ * connections, followed by the table row by row. The header is only written once the
+ * whole table is on disk, so a build that fails or is interrupted never leaves a file
+ * that passes for a finished table.
+ *
+ */
+public class CompactDistanceStore implements DistanceEngine {
+  
+  private static final int MAGIC = 0x44495354;
+  private static final int HEADER_BYTES = 24;
+  private static final int MAX_SEGMENT_BYTES = 1 << 30;
+  private static final char NO_PATH = Character.MAX_VALUE;
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private final int cells;
+  private final int rowsPerSegment;
+  private final ByteBuffer[] segments;
+  
+  /**
+   * Constructor that computes the table of the grid in direct memory.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @throws IllegalArgumentException when grid is null
+   * @throws IllegalStateException when a distance does not fit in 16 bits
+   */
+  public CompactDistanceStore(ConnectionGrid grid) 
+      throws IllegalArgumentException, IllegalStateException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    this.cells = grid.getCellCount();
+    this.rowsPerSegment = rowsPerSegment(this.cells);
+    this.segments = new ByteBuffer[segmentCount(this.cells, this.rowsPerSegment)];
+    for (int i = 0; i < this.segments.length; i++) {
+      this.segments[i] = ByteBuffer.allocateDirect(this.segmentBytes(i));
+    }
+    this.fill(grid);
+  }
+  
+  /**
+   * Constructor over segments already holding a table.
+   * @param cells int with the number of cells of the grid.
+   * @param segments buffers with the table, rowsPerSegment rows each.
+   */
+  private CompactDistanceStore(int cells, ByteBuffer[] segments) {
+    this.cells = cells;
+    this.rowsPerSegment = rowsPerSegment(cells);
+    this.segments = segments;
+  }
+  
+  /**
+   * Maps the table of a grid stored in a file, computing and writing it first if the
+   * file does not exist, was built for a different grid or was left unfinished. The
+   * file is deleted when the table cannot be computed.
+   * @param file path of the table file.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @return store backed by the mapped file.
+   * @throws IllegalArgumentException when file or grid are null
+   * @throws IllegalStateException when the file cannot be read or written, it exists
+   *     and is not a distance table, or a distance does not fit in 16 bits
+   */
+  public static CompactDistanceStore openOrCreate(Path file, ConnectionGrid grid) 
+      throws IllegalArgumentException, IllegalStateException {
+    if (file == null || grid == null) {
+      throw new IllegalArgumentException("File and grid cannot be null.");
+    }
+    long fingerprint = fingerprint(grid);
+    if (Files.exists(file)) {
+      ByteBuffer header = readRawHeader(file);
+      if (!isUnwritten(header)) {
+        checkHeader(header);
+        if (header.getInt(4) == grid.getRows() && header.getInt(8) == grid.getColumns()
+            && header.getLong(12) == fingerprint) {
+          return open(file);
+        }
+      }
+    }
+    
+    int cells = grid.getCellCount();
+    int rowsPerSegment = rowsPerSegment(cells);
+    ByteBuffer[] segments = new ByteBuffer[segmentCount(cells, rowsPerSegment)];
+    boolean written = false;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, 
+        StandardOpenOption.WRITE)) {
+      CompactDistanceStore store = new CompactDistanceStore(cells, segments);
+      for (int i = 0; i < segments.length; i++) {
+        segments[i] = channel.map(MapMode.READ_WRITE, 
+            HEADER_BYTES + (long) i * rowsPerSegment * cells * 2, store.segmentBytes(i));
+      }
+      store.fill(grid);
+      for (ByteBuffer segment : segments) {
+        ((MappedByteBuffer) segment).force();
+      }
+      MappedByteBuffer header = channel.map(MapMode.READ_WRITE, 0, HEADER_BYTES);
+      header.putInt(0, MAGIC);
+      header.putInt(4, grid.getRows());
+      header.putInt(8, grid.getColumns());
+      header.putLong(12, fingerprint);
+      header.force();
+      written = true;
+      return store;
+    }
+    catch (IOException ioe) {
+      throw new IllegalStateException("Distance table could not be written.", ioe);
+    }
+    finally {
+      if (!written) {
+        deleteUnfinished(file);
+      }
+    }
+  }
+  
+  /**
+   * Maps, read only, the table stored in a file.
+   * @param file path of the table file.
+   * @return store backed by the mapped file.
+   * @throws IllegalArgumentException when file is null
+   * @throws IllegalStateException when the file cannot be read or is not a distance table
+   */
+  public static CompactDistanceStore open(Path file) 
+      throws IllegalArgumentException, IllegalStateException {
+    if (file == null) {
+      throw new IllegalArgumentException("File cannot be null.");
+    }
+    ByteBuffer header = readHeader(file);
+    int cells = header.getInt(4) * header.getInt(8);
+    int rowsPerSegment = rowsPerSegment(cells);
+    ByteBuffer[] segments = new ByteBuffer[segmentCount(cells, rowsPerSegment)];
+    CompactDistanceStore store = new CompactDistanceStore(cells, segments);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() < HEADER_BYTES + (long) cells * cells * 2) {
+        throw new IllegalStateException("Distance table file is truncated.");
+      }
+      for (int i = 0; i < segments.length; i++) {
+        segments[i] = channel.map(MapMode.READ_ONLY, 
+            HEADER_BYTES + (long) i * rowsPerSegment * cells * 2, store.segmentBytes(i));
+      }
+    }
+    catch (IOException ioe) {
+      throw new IllegalStateException("Distance table could not be read.", ioe);
+    }
+    return store;
+  }
+  
+  @Override
+  public int getDistance(int origin, int destination) throws IllegalArgumentException {
+    if (origin < 0 || origin >= this.cells || destination < 0 || destination >= this.cells) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+    ByteBuffer segment = this.segments[origin / this.rowsPerSegment];
+    int offset = ((origin % this.rowsPerSegment) * this.cells + destination) * 2;
+    char distance = segment.getChar(offset);
+    return (distance == NO_PATH) ? UNREACHABLE : distance;
+  }
+  
+  /**
+   * Helper method that runs one breadth first search per source and writes its row.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @throws IllegalStateException when a distance does not fit in 16 bits
+   */
+  private void fill(ConnectionGrid grid) throws IllegalStateException {
+    BreadthFirstSearch search = new BreadthFirstSearch(grid);
+    int[] row = new int[this.cells];
+    for (int source = 0; source < this.cells; source++) {
+      search.run(source, row);
+      ByteBuffer segment = this.segments[source / this.rowsPerSegment];
+      int offset = (source % this.rowsPerSegment) * this.cells * 2;
+      for (int destination = 0; destination < this.cells; destination++) {
+        int distance = row[destination];
+        if (distance == UNREACHABLE) {
+          segment.putChar(offset + destination * 2, NO_PATH);
+        }
+        else if (distance >= NO_PATH) {
+          throw new IllegalStateException("Distance does not fit in the compact table.");
+        }
+        else {
+          segment.putChar(offset + destination * 2, (char) distance);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Helper that returns the size in bytes of a segment. The last one can hold
+   * fewer rows than the rest.
+   * @param index int index of the segment.
+   * @return int with the bytes of the segment.
+   */
+  private int segmentBytes(int index) {
+    int firstRow = index * this.rowsPerSegment;
+    int rowCount = Math.min(this.rowsPerSegment, this.cells - firstRow);
+    return rowCount * this.cells * 2;
+  }
+  
+  /**
+   * Helper that returns how many table rows fit in a single buffer.
+   * @param cells int with the number of cells of the grid.
+   * @return int with the number of rows per segment.
+   */
+  private static int rowsPerSegment(int cells) {
+    return Math.max(1, MAX_SEGMENT_BYTES / Math.max(1, cells * 2));
+  }
+  
+  /**
+   * Helper that returns the number of buffers needed by the table.
+   * @param cells int with the number of cells of the grid.
+   * @param rowsPerSegment int with the number of rows per segment.
+   * @return int with the number of segments.
+   */
+  private static int segmentCount(int cells, int rowsPerSegment) {
+    return (cells + rowsPerSegment - 1) / rowsPerSegment;
+  }
+  
+  /**
+   * Helper that reads and checks the header of a table file.
+   * @param file path of the table file.
+   * @return buffer with the header.
+   * @throws IllegalStateException when the file cannot be read or is not a distance table
+   */
+  private static ByteBuffer readHeader(Path file) throws IllegalStateException {
+    ByteBuffer header = readRawHeader(file);
+    checkHeader(header);
+    return header;
+  }
+  
+  /**
+   * Helper that reads the bytes of the header of a file, which can be fewer than the
+   * header size if the file is shorter.
+   * @param file path of the table file.
+   * @return buffer with the bytes read, up to its position.
+   * @throws IllegalStateException when the file cannot be read
+   */
+  private static ByteBuffer readRawHeader(Path file) throws IllegalStateException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      while (header.hasRemaining() && channel.read(header) >= 0) {
+        continue;
+      }
+    }
+    catch (IOException ioe) {
+      throw new IllegalStateException("Distance table could not be read.", ioe);
+    }
+    return header;
+  }
+  
+  /**
+   * Helper that checks that a header read from a file belongs to a distance table.
+   * @param header buffer with the bytes read from the file.
+   * @throws IllegalStateException when the file is not a distance table
+   */
+  private static void checkHeader(ByteBuffer header) throws IllegalStateException {
+    if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+      throw new IllegalStateException("File is not a distance table.");
+    }
+  }
+  
+  /**
+   * Helper that tells if a header was never written, as happens when a build is
+   * interrupted before the table is finished.
+   * @param header buffer with the bytes read from the file.
+   * @return boolean true if every byte read is zero.
+   */
+  private static boolean isUnwritten(ByteBuffer header) {
+    for (int i = 0; i < header.position(); i++) {
+      if (header.get(i) != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Helper that removes the file of a table that could not be finished, so it is never
+   * taken for a finished one.
+   * @param file path of the table file.
+   */
+  private static void deleteUnfinished(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    }
+    catch (IOException ioe) {
+      // The header was never written, so the file is rebuilt by the next call anyway.
+      return;
+    }
+  }
+  
+  /**
+   * Helper that summarizes the connections of a grid in a single number, used to
+   * detect tables computed for a different dungeon.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @return long hash of the connections.
+   */
+  private static long fingerprint(ConnectionGrid grid) {
+    long hash = 0xcbf29ce484222325L;
+    for (int cell = 0; cell < grid.getCellCount(); cell++) {
+      for (Direction dir : DIRECTIONS) {
+        hash ^= grid.getNeighbour(cell, dir) + 1;
+        hash *= 0x100000001b3L;
+      }
+    }
+    return hash;
+  }
+
+}
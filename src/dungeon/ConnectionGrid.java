@@ -0,0 +1,92 @@
+package dungeon;
+
+/**
+ * Interface representing the connections between the cells of the dungeon grid.
+ * Every cell can only be connected with its four (possibly wrapped) neighbours, so
+ * connections are stored per cell and direction. Cells are referenced either by
+ * their row and column indexes or by their dense id (row * columns + column).
+ *
+ */
+public interface ConnectionGrid {
+  
+  /**
+   * Returns the number of rows of the grid.
+   * @return int with the number of rows.
+   */
+  public int getRows();
+  
+  /**
+   * Returns the number of columns of the grid.
+   * @return int with the number of columns.
+   */
+  public int getColumns();
+  
+  /**
+   * Returns the number of cells of the grid.
+   * @return int with rows * columns.
+   */
+  public int getCellCount();
+  
+  /**
+   * Returns the dense id of the cell located in the given indexes.
+   * @param row int index of the row of the cell.
+   * @param col int index of the column of the cell.
+   * @return int with the id of the cell.
+   * @throws IllegalArgumentException when the indexes are outside of the grid
+   */
+  public int getCellId(int row, int col) throws IllegalArgumentException;
+  
+  /**
+   * Adds a connection going from cell a towards its neighbour b. The connection is
+   * only registered from a's side, so undirected connections need to be added twice.
+   * @param rowA int index of the row of cell a.
+   * @param colA int index of the column of cell a.
+   * @param rowB int index of the row of cell b.
+   * @param colB int index of the column of cell b.
+   * @throws IllegalArgumentException when a cell is outside of the grid or b is not a
+   *     neighbour of a
+   */
+  public void addConnection(int rowA, int colA, int rowB, int colB) 
+      throws IllegalArgumentException;
+  
+  /**
+   * Removes the connection going from cell a towards its neighbour b. Like additions,
+   * undirected connections need to be removed from both sides.
+   * @param rowA int index of the row of cell a.
+   * @param colA int index of the column of cell a.
+   * @param rowB int index of the row of cell b.
+   * @param colB int index of the column of cell b.
+   * @throws IllegalArgumentException when a cell is outside of the grid or b is not a
+   *     neighbour of a
+   */
+  public void removeConnection(int rowA, int colA, int rowB, int colB) 
+      throws IllegalArgumentException;
+  
+  /**
+   * Checks if cell a has a connection towards cell b.
+   * @param rowA int index of the row of cell a.
+   * @param colA int index of the column of cell a.
+   * @param rowB int index of the row of cell b.
+   * @param colB int index of the column of cell b.
+   * @return true if a is connected to b. False if not, or if b is not a neighbour of a.
+   * @throws IllegalArgumentException when a cell is outside of the grid
+   */
+  public boolean isConnected(int rowA, int colA, int rowB, int colB) 
+      throws IllegalArgumentException;
+  
+  /**
+   * Returns the id of the neighbour reached from a cell through a direction.
+   * @param cell int id of the cell.
+   * @param dir Direction of the movement.
+   * @return int id of the neighbour, or -1 if there is no connection in that direction.
+   */
+  public int getNeighbour(int cell, Direction dir);
+  
+  /**
+   * Returns the number of connections of a cell.
+   * @param cell int id of the cell.
+   * @return int between 0 and 4.
+   */
+  public int getDegree(int cell);
+
+}
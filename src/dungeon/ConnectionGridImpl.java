@@ -0,0 +1,146 @@
+package dungeon;
+
+/**
+ * Implementation of the connection grid that stores the four possible connections
+ * of every cell as a bit mask. Memory grows linearly with the number of cells and
+ * every query is answered in constant time.
+ *
+ */
+public class ConnectionGridImpl implements ConnectionGrid {
+  
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private final int rows;
+  private final int columns;
+  private final byte[] masks;
+  
+  /**
+   * Constructor of an empty grid, where no cell is connected.
+   * @param rows int number with the number of rows of the grid.
+   * @param columns int number with the number of columns of the grid.
+   * @throws IllegalArgumentException when rows or columns are non positive
+   */
+  public ConnectionGridImpl(int rows, int columns) throws IllegalArgumentException {
+    if (rows < 1 || columns < 1) {
+      throw new IllegalArgumentException("Rows and columns need to be positive integers.");
+    }
+    this.rows = rows;
+    this.columns = columns;
+    this.masks = new byte[rows * columns];
+  }
+  
+  @Override
+  public int getRows() {
+    return this.rows;
+  }
+  
+  @Override
+  public int getColumns() {
+    return this.columns;
+  }
+  
+  @Override
+  public int getCellCount() {
+    return this.masks.length;
+  }
+  
+  @Override
+  public int getCellId(int row, int col) throws IllegalArgumentException {
+    if (row < 0 || row >= this.rows || col < 0 || col >= this.columns) {
+      throw new IllegalArgumentException("Indexes are outside of the grid.");
+    }
+    return row * this.columns + col;
+  }
+  
+  @Override
+  public void addConnection(int rowA, int colA, int rowB, int colB) 
+      throws IllegalArgumentException {
+    int a = this.getCellId(rowA, colA);
+    int b = this.getCellId(rowB, colB);
+    boolean neighbour = false;
+    
+    // In small wrapped grids two directions can lead to the same neighbour,
+    // so we register every one of them.
+    for (Direction dir : DIRECTIONS) {
+      if (this.getAdjacent(a, dir) == b) {
+        this.masks[a] |= 1 << dir.ordinal();
+        neighbour = true;
+      }
+    }
+    if (!neighbour) {
+      throw new IllegalArgumentException("Only neighbour cells can be connected.");
+    }
+  }
+  
+  @Override
+  public void removeConnection(int rowA, int colA, int rowB, int colB) 
+      throws IllegalArgumentException {
+    int a = this.getCellId(rowA, colA);
+    int b = this.getCellId(rowB, colB);
+    boolean neighbour = false;
+    
+    for (Direction dir : DIRECTIONS) {
+      if (this.getAdjacent(a, dir) == b) {
+        this.masks[a] &= ~(1 << dir.ordinal());
+        neighbour = true;
+      }
+    }
+    if (!neighbour) {
+      throw new IllegalArgumentException("Only neighbour cells can be disconnected.");
+    }
+  }
+  
+  @Override
+  public boolean isConnected(int rowA, int colA, int rowB, int colB) 
+      throws IllegalArgumentException {
+    int a = this.getCellId(rowA, colA);
+    int b = this.getCellId(rowB, colB);
+    
+    for (Direction dir : DIRECTIONS) {
+      if ((this.masks[a] & (1 << dir.ordinal())) != 0 && this.getAdjacent(a, dir) == b) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  @Override
+  public int getNeighbour(int cell, Direction dir) {
+    if ((this.masks[cell] & (1 << dir.ordinal())) == 0) {
+      return -1;
+    }
+    return this.getAdjacent(cell, dir);
+  }
+  
+  @Override
+  public int getDegree(int cell) {
+    return Integer.bitCount(this.masks[cell]);
+  }
+  
+  /**
+   * Helper method that returns the id of the adjacent cell in a direction,
+   * wrapping around the borders of the grid.
+   * @param cell int id of the cell.
+   * @param dir Direction of the movement.
+   * @return int id of the adjacent cell.
+   */
+  private int getAdjacent(int cell, Direction dir) {
+    int row = cell / this.columns;
+    int col = cell % this.columns;
+    switch (dir) {
+      case NORTH:
+        row = (row == 0) ? this.rows - 1 : row - 1;
+        break;
+      case SOUTH:
+        row = (row == this.rows - 1) ? 0 : row + 1;
+        break;
+      case EAST:
+        col = (col == this.columns - 1) ? 0 : col + 1;
+        break;
+      default:
+        col = (col == 0) ? this.columns - 1 : col - 1;
+        break;
+    }
+    return row * this.columns + col;
+  }
+
+}
@@ -0,0 +1,177 @@
+package dungeon;
+
+import java.util.Arrays;
+
+/**
+ * All pairs distance engine over the contracted cave graph. Shortest distances are
+ * only precomputed between caves, running Dijkstra over the cave edges weighted by
+ * their number of steps. A tunnel reaches the rest of the dungeon through the two
+ * caves at the ends of its chain, so its distances are derived from theirs. On
+ * typical dungeons this roughly halves the nodes of the working graph and quarters
+ * the size of the table.
+ *
+ */
+public class ContractedDistanceEngine implements DistanceEngine {
+  
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private final CaveGraph caveGraph;
+  private final ConnectionGrid grid;
+  private final int[][] distances;
+  
+  /**
+   * Constructor that contracts the grid and computes the distances between caves.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @throws IllegalArgumentException when grid is null
+   */
+  public ContractedDistanceEngine(ConnectionGrid grid) throws IllegalArgumentException {
+    this(new CaveGraph(grid), grid);
+  }
+  
+  /**
+   * Constructor that computes the distances between caves of an already
+   * contracted grid.
+   * @param caveGraph contracted graph of the grid.
+   * @param grid connection grid the cave graph was built from.
+   * @throws IllegalArgumentException when caveGraph or grid are null
+   */
+  public ContractedDistanceEngine(CaveGraph caveGraph, ConnectionGrid grid) 
+      throws IllegalArgumentException {
+    if (caveGraph == null || grid == null) {
+      throw new IllegalArgumentException("Cave graph and grid cannot be null.");
+    }
+    this.caveGraph = caveGraph;
+    this.grid = grid;
+    int caves = caveGraph.getCaveCount();
+    this.distances = new int[caves][caves];
+    long[] heap = new long[16];
+    for (int source = 0; source < caves; source++) {
+      heap = this.runDijkstra(source, this.distances[source], heap);
+    }
+  }
+  
+  @Override
+  public int getDistance(int origin, int destination) throws IllegalArgumentException {
+    int cells = this.grid.getCellCount();
+    if (origin < 0 || origin >= cells || destination < 0 || destination >= cells) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+    int best = UNREACHABLE;
+    
+    // Two tunnels of the same chain can reach each other without any cave.
+    int chain = this.caveGraph.getChain(origin);
+    if (chain != -1 && chain == this.caveGraph.getChain(destination)) {
+      int gap = Math.abs(this.caveGraph.getChainPosition(origin) 
+          - this.caveGraph.getChainPosition(destination));
+      if (this.caveGraph.isRing(chain)) {
+        gap = Math.min(gap, this.caveGraph.getChainLength(chain) - gap);
+      }
+      best = gap;
+    }
+    
+    for (Direction originExit : DIRECTIONS) {
+      int originCave = this.getEndCave(origin, originExit);
+      if (originCave == -1) {
+        continue;
+      }
+      int originSteps = this.getEndSteps(origin, originExit);
+      int[] row = this.distances[this.caveGraph.getCaveIndex(originCave)];
+      for (Direction destinationExit : DIRECTIONS) {
+        int destinationCave = this.getEndCave(destination, destinationExit);
+        if (destinationCave == -1) {
+          continue;
+        }
+        int between = row[this.caveGraph.getCaveIndex(destinationCave)];
+        if (between != UNREACHABLE) {
+          best = Math.min(best, 
+              originSteps + between + this.getEndSteps(destination, destinationExit));
+        }
+      }
+    }
+    return best;
+  }
+  
+  /**
+   * Helper that returns the cave a cell reaches through an exit. A cave is its own end
+   * through its first direction only, and tunnels reach the ends of their chain.
+   * @param cell int id of the cell.
+   * @param dir Direction of the exit.
+   * @return int id of the cave, or -1 if the exit does not lead to a cave.
+   */
+  private int getEndCave(int cell, Direction dir) {
+    if (this.caveGraph.isCave(cell)) {
+      return (dir == Direction.NORTH) ? cell : -1;
+    }
+    return this.caveGraph.getJumpTarget(cell, dir);
+  }
+  
+  /**
+   * Helper that returns the steps to the cave returned by getEndCave.
+   * @param cell int id of the cell.
+   * @param dir Direction of the exit.
+   * @return int with the number of steps.
+   */
+  private int getEndSteps(int cell, Direction dir) {
+    return this.caveGraph.isCave(cell) ? 0 : this.caveGraph.getJumpSteps(cell, dir);
+  }
+  
+  /**
+   * Helper that runs Dijkstra from a cave over the cave edges.
+   * @param source int index of the source cave.
+   * @param row array where the distance to every cave is written.
+   * @param heap buffer reused as the priority queue.
+   * @return the heap buffer, possibly grown.
+   */
+  private long[] runDijkstra(int source, int[] row, long[] heap) {
+    Arrays.fill(row, UNREACHABLE);
+    row[source] = 0;
+    heap[0] = source;
+    int size = 1;
+    while (size > 0) {
+      long top = heap[0];
+      long last = heap[--size];
+      int i = 0;
+      while (2 * i + 1 < size) {
+        int child = 2 * i + 1;
+        if (child + 1 < size && heap[child + 1] < heap[child]) {
+          child++;
+        }
+        if (last <= heap[child]) {
+          break;
+        }
+        heap[i] = heap[child];
+        i = child;
+      }
+      heap[i] = last;
+      
+      int cost = (int) (top >>> 32);
+      int index = (int) top;
+      if (cost > row[index]) {
+        continue;
+      }
+      int cave = this.caveGraph.getCave(index);
+      for (Direction dir : DIRECTIONS) {
+        int target = this.caveGraph.getJumpTarget(cave, dir);
+        if (target == -1) {
+          continue;
+        }
+        int targetIndex = this.caveGraph.getCaveIndex(target);
+        int next = cost + this.caveGraph.getJumpSteps(cave, dir);
+        if (next < row[targetIndex]) {
+          row[targetIndex] = next;
+          if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+          }
+          long entry = ((long) next << 32) | targetIndex;
+          int j = size++;
+          while (j > 0 && heap[(j - 1) >>> 1] > entry) {
+            heap[j] = heap[(j - 1) >>> 1];
+            j = (j - 1) >>> 1;
+          }
+          heap[j] = entry;
+        }
+      }
+    }
+    return heap;
+  }
+
+}
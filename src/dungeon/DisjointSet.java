@@ -0,0 +1,45 @@
+package dungeon;
+
+/**
+ * Interface representing a family of disjoint sets of dungeon cells.
+ * Cells are referenced by their dense numerical id (row * columns + column),
+ * so the structure can be used to join the subsets connected by an edge and
+ * to check if two cells already belong to the same subset.
+ *
+ */
+public interface DisjointSet {
+  
+  /**
+   * Returns the representative cell of the subset containing the given cell.
+   * @param cell int id of the cell to be looked up.
+   * @return int id of the representative of the subset.
+   * @throws IllegalArgumentException when cell is outside of the structure
+   */
+  public int find(int cell) throws IllegalArgumentException;
+  
+  /**
+   * Joins the subsets that contain both cells.
+   * @param a int id of the cell at one extreme.
+   * @param b int id of the cell at the other extreme.
+   * @return true if both cells were in different subsets and they were joined,
+   *     false if they already belonged to the same subset.
+   * @throws IllegalArgumentException when a or b are outside of the structure
+   */
+  public boolean union(int a, int b) throws IllegalArgumentException;
+  
+  /**
+   * Checks if two cells belong to the same subset.
+   * @param a int id of the cell at one extreme.
+   * @param b int id of the cell at the other extreme.
+   * @return true if both cells are in the same subset.
+   * @throws IllegalArgumentException when a or b are outside of the structure
+   */
+  public boolean connected(int a, int b) throws IllegalArgumentException;
+  
+  /**
+   * Returns the number of disjoint subsets currently held.
+   * @return int with the number of subsets.
+   */
+  public int getSetCount();
+
+}
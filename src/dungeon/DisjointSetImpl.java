@@ -0,0 +1,84 @@
+package dungeon;
+
+/**
+ * Array based implementation of the disjoint set interface.
+ * It uses path compression and union by rank, so any sequence of operations
+ * runs in almost linear time with the number of cells.
+ *
+ */
+public class DisjointSetImpl implements DisjointSet {
+  
+  private final int[] parent;
+  private final byte[] rank;
+  private int setCount;
+  
+  /**
+   * Constructor that starts every cell in its own singleton subset.
+   * @param size int with the number of cells of the structure.
+   * @throws IllegalArgumentException when size is negative
+   */
+  public DisjointSetImpl(int size) throws IllegalArgumentException {
+    if (size < 0) {
+      throw new IllegalArgumentException("Size cannot be negative.");
+    }
+    this.parent = new int[size];
+    this.rank = new byte[size];
+    for (int i = 0; i < size; i++) {
+      this.parent[i] = i;
+    }
+    this.setCount = size;
+  }
+  
+  @Override
+  public int find(int cell) throws IllegalArgumentException {
+    if (cell < 0 || cell >= this.parent.length) {
+      throw new IllegalArgumentException("Cell is outside of the structure.");
+    }
+    int root = cell;
+    while (this.parent[root] != root) {
+      root = this.parent[root];
+    }
+    
+    // Path compression, every visited cell points directly to the root.
+    while (this.parent[cell] != root) {
+      int next = this.parent[cell];
+      this.parent[cell] = root;
+      cell = next;
+    }
+    return root;
+  }
+  
+  @Override
+  public boolean union(int a, int b) throws IllegalArgumentException {
+    int rootA = this.find(a);
+    int rootB = this.find(b);
+    if (rootA == rootB) {
+      return false;
+    }
+    
+    // Union by rank, the shallower tree hangs from the deeper one.
+    if (this.rank[rootA] < this.rank[rootB]) {
+      this.parent[rootA] = rootB;
+    }
+    else if (this.rank[rootA] > this.rank[rootB]) {
+      this.parent[rootB] = rootA;
+    }
+    else {
+      this.parent[rootB] = rootA;
+      this.rank[rootA]++;
+    }
+    this.setCount--;
+    return true;
+  }
+  
+  @Override
+  public boolean connected(int a, int b) throws IllegalArgumentException {
+    return this.find(a) == this.find(b);
+  }
+  
+  @Override
+  public int getSetCount() {
+    return this.setCount;
+  }
+
+}
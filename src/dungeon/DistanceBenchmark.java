@@ -0,0 +1,101 @@
+package dungeon;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Command line benchmark of the all pairs distance engines. For several dungeon sizes
+ * and interconnectivity levels it builds the same dungeon once and times the
+ * reference Floyd-Warshall over the 4D array, the blocked Floyd-Warshall over the flat
+ * matrix and the breadth first search engine, checking that all of them agree.
+ * Arguments are the dungeon sides to be measured, 10 15 20 30 by default.
+ *
+ */
+public class DistanceBenchmark {
+  
+  private static final int REPETITIONS = 5;
+  
+  /**
+   * Entry point of the benchmark.
+   * @param args optional list of dungeon sides.
+   */
+  public static void main(String[] args) {
+    int[] sides = {10, 15, 20, 30};
+    if (args.length > 0) {
+      sides = new int[args.length];
+      for (int i = 0; i < args.length; i++) {
+        sides[i] = Integer.parseInt(args[i]);
+      }
+    }
+    
+    System.out.println(String.format(Locale.ROOT, "%6s %8s %14s %14s %14s", 
+        "side", "connect", "floyd4d(ms)", "blocked(ms)", "bfs(ms)"));
+    for (int side : sides) {
+      int cells = side * side;
+      int[] connectivityLevels = {0, cells / 50, cells / 10};
+      for (int interConnectivity : connectivityLevels) {
+        DungeonImpl dungeon = new DungeonImpl(side, side, true, interConnectivity, 
+            0, 1, side, true, DistanceMode.LAZY);
+        ConnectionGrid grid = dungeon.getConnectionGrid();
+        
+        double floyd = time(() -> new FloydWarshallDistanceEngine(grid));
+        double blocked = time(() -> new BlockedFloydWarshallDistanceEngine(grid));
+        double bfs = time(() -> new BfsDistanceEngine(grid));
+        check(grid, new FloydWarshallDistanceEngine(grid), 
+            new BlockedFloydWarshallDistanceEngine(grid), new BfsDistanceEngine(grid));
+        
+        System.out.println(String.format(Locale.ROOT, "%6d %8d %14.2f %14.2f %14.2f", 
+            side, interConnectivity, floyd, blocked, bfs));
+      }
+    }
+  }
+  
+  /**
+   * Helper that returns the median time of building an engine, after one warm up run.
+   * @param factory builder of the engine to be timed.
+   * @return double with the median milliseconds of the repetitions.
+   */
+  private static double time(EngineBuilder factory) {
+    factory.build();
+    long[] times = new long[REPETITIONS];
+    for (int i = 0; i < REPETITIONS; i++) {
+      long start = System.nanoTime();
+      factory.build();
+      times[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(times);
+    return times[REPETITIONS / 2] / 1e6;
+  }
+  
+  /**
+   * Helper that checks that every engine returns the same distances.
+   * @param grid connection grid the engines were built over.
+   * @param engines distance engines to be compared.
+   * @throws IllegalStateException when two engines disagree
+   */
+  private static void check(ConnectionGrid grid, DistanceEngine... engines) 
+      throws IllegalStateException {
+    for (int i = 0; i < grid.getCellCount(); i++) {
+      for (int j = 0; j < grid.getCellCount(); j++) {
+        for (DistanceEngine engine : engines) {
+          if (engine.getDistance(i, j) != engines[0].getDistance(i, j)) {
+            throw new IllegalStateException("Distance engines disagree.");
+          }
+        }
+      }
+    }
+  }
+  
+  /**
+   * Builder of the engine being timed.
+   */
+  private interface EngineBuilder {
+    
+    /**
+     * Builds the engine.
+     * @return the engine built.
+     */
+    DistanceEngine build();
+  }
+
+}
@@ -0,0 +1,26 @@
+package dungeon;
+
+/**
+ * Interface representing an algorithm able to answer the number of steps of the
+ * shortest path between two cells of a connection grid. Cells are referenced by
+ * their dense id (row * columns + column).
+ *
+ */
+public interface DistanceEngine {
+  
+  /**
+   * Distance reported between two cells that are not connected by any path.
+   */
+  public static final int UNREACHABLE = 9999999;
+  
+  /**
+   * Returns the number of steps of the shortest path between two cells.
+   * @param origin int id of the cell at one extreme.
+   * @param destination int id of the cell at the other extreme.
+   * @return int with the number of edges needed to go from origin to destination,
+   *     or UNREACHABLE if there is no path between them.
+   * @throws IllegalArgumentException when origin or destination are outside of the grid
+   */
+  public int getDistance(int origin, int destination) throws IllegalArgumentException;
+
+}
@@ -0,0 +1,18 @@
+package dungeon;
+
+/**
+ * Interface representing a way of building the distance engine of a dungeon
+ * once its final connections are known.
+ *
+ */
+public interface DistanceEngineFactory {
+  
+  /**
+   * Builds the distance engine over the final connections of a dungeon.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @return distance engine able to answer the dungeon's distance queries.
+   * @throws IllegalArgumentException when grid is null
+   */
+  public DistanceEngine createEngine(ConnectionGrid grid) throws IllegalArgumentException;
+
+}
@@ -0,0 +1,20 @@
+package dungeon;
+
+/**
+ * Interface representing an estimate of the distance between two cells, used to guide
+ * informed searches. Estimates must never exceed the real distance, and must not drop
+ * by more than one between neighbour cells, so the searches stay exact.
+ *
+ */
+public interface DistanceHeuristic {
+  
+  /**
+   * Returns a lower bound of the number of steps between two cells.
+   * @param cell int id of the cell being evaluated.
+   * @param target int id of the cell the search is heading to.
+   * @return int with the estimate, or DistanceEngine.UNREACHABLE if the target 
+   *     is known to be unreachable from the cell.
+   */
+  public int estimate(int cell, int target);
+
+}
@@ -0,0 +1,111 @@
+package dungeon;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Enum with the default strategies available to answer the shortest path distances
+ * of a dungeon. Each mode knows how to build its distance engine over the
+ * final connections of the dungeon.
+ *
+ */
+public enum DistanceMode implements DistanceEngineFactory {
+  
+  /**
+   * Precomputes the distance between every pair of locations at construction.
+   */
+  ALL_PAIRS {
+    @Override
+    public DistanceEngine createEngine(ConnectionGrid grid) {
+      return new BfsDistanceEngine(grid);
+    }
+  },
+  
+  /**
+   * Precomputes the distance between every pair of caves at construction, deriving
+   * the distances of tunnels from the caves at the ends of their chains.
+   */
+  CONTRACTED {
+    @Override
+    public DistanceEngine createEngine(ConnectionGrid grid) {
+      return new ContractedDistanceEngine(grid);
+    }
+  },
+  
+  /**
+   * Precomputes the distance between every pair of locations at construction,
+   * running the searches of different sources on all the available cores.
+   */
+  PARALLEL_ALL_PAIRS {
+    @Override
+    public DistanceEngine createEngine(ConnectionGrid grid) {
+      return new BfsDistanceEngine(grid, ForkJoinPool.commonPool());
+    }
+  },
+  
+  /**
+   * Precomputes the distance between every pair of locations at construction with a
+   * cache blocked Floyd-Warshall, suited for small highly interconnected dungeons.
+   */
+  DENSE {
+    @Override
+    public DistanceEngine createEngine(ConnectionGrid grid) {
+      return new BlockedFloydWarshallDistanceEngine(grid);
+    }
+  },
+  
+  /**
+   * Answers every query with lowest common ancestors over the spanning tree of the
+   * dungeon, in O(log V) time and O(V) memory. Best suited for dungeons with zero
+   * or very low interconnectivity.
+   */
+  TREE {
+    @Override
+    public DistanceEngine createEngine(ConnectionGrid grid) {
+      return new TreeDistanceEngine(grid);
+    }
+  },
+  
+  /**
+   * Precomputes the distances from 8 landmark locations and answers every query with
+   * an A* search guided by them. Suited for dungeons of millions of locations.
+   */
+  LANDMARKS {
+    @Override
+    public DistanceEngine createEngine(ConnectionGrid grid) {
+      return new LandmarkDistanceEngine(grid, 8);
+    }
+  },
+  
+  /**
+   * Splits the dungeon in chunks of 16 x 16 locations and answers every query over the
+   * graph of chunk entrances. Suited for very large dungeons.
+   */
+  HIERARCHICAL {
+    @Override
+    public DistanceEngine createEngine(ConnectionGrid grid) {
+      return new HierarchicalDistanceEngine(grid, 16);
+    }
+  },
+  
+  /**
+   * Answers every query on demand, caching only the most queried locations.
+   */
+  LAZY {
+    @Override
+    public DistanceEngine createEngine(ConnectionGrid grid) {
+      return new LazyDistanceEngine(grid, 16);
+    }
+  },
+  
+  /**
+   * Precomputes the distance between every pair of locations at construction,
+   * keeping the table as 16 bit values outside of the java heap.
+   */
+  OFF_HEAP {
+    @Override
+    public DistanceEngine createEngine(ConnectionGrid grid) {
+      return new CompactDistanceStore(grid);
+    }
+  };
+
+}
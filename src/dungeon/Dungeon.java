@@ -60,6 +60,29 @@ public interface Dungeon {
    */
   public int getPathDistance(Location origin, Location destination) throws IllegalArgumentException;
   
+  /**
+   * Returns the locations of a shortest path between origin and destination.
+   * @param origin Location at one extreme.
+   * @param destination Location at the other extreme.
+   * @return list of locations of the path, both extremes included. It is empty if
+   *     destination cannot be reached.
+   * @throws IllegalArgumentException when origin or destination are null
+   */
+  public List<Location> getPath(Location origin, Location destination) 
+      throws IllegalArgumentException;
+  
+  /**
+   * Returns the directions to take to follow a shortest path from origin
+   * to destination.
+   * @param origin Location where the path starts.
+   * @param destination Location where the path ends.
+   * @return list of directions, one per step. It is empty if both locations are the
+   *     same or destination cannot be reached.
+   * @throws IllegalArgumentException when origin or destination are null
+   */
+  public List<Direction> getPathDirections(Location origin, Location destination) 
+      throws IllegalArgumentException;
+  
   /**
    * Returns the original location of treasures
    * before they are collected by the player.
@@ -104,4 +127,19 @@ public interface Dungeon {
    */
   public Smell checkSmell(Location l, boolean primarySearch) throws IllegalArgumentException;
 
+  
+  /**
+   * Returns the location an arrow reaches when shot from a location. Arrows follow
+   * the tunnels they enter and only go straight through caves, stopping after
+   * crossing the given number of caves or when they hit a wall.
+   * @param shotStart location where the shot starts.
+   * @param dir Direction of the shot.
+   * @param distance number of caves the arrow travels.
+   * @return final Location the arrow reaches.
+   * @throws IllegalArgumentException when shotStart or dir are null, or distance is
+   *     not positive
+   */
+  public Location getArrowDestination(Location shotStart, Direction dir, int distance) 
+      throws IllegalArgumentException;
+
 }
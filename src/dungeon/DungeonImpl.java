@@ -2,11 +2,11 @@ package dungeon;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Probably the largest class of this program. Holds most of the elements together: 
@@ -16,19 +16,25 @@ import java.util.Random;
  */
 public class DungeonImpl implements Dungeon {
   
+  private static final int START_FINISH_DISTANCE = 5;
+  private static final int START_ATTEMPTS = 64;
   private final int rows;
   private final int columns;
   private final boolean wrapped;
   private final int interConnectivity;
-  private final boolean[][][][] finalConnections;
+  private final ConnectionGrid finalConnections;
+  private final CaveGraph caveGraph;
   private Location[][] locations;
-  private final List<Edge> potentialEdges;
-  private final List<Edge> selectedEdges;
-  private final int[][][][] shortestDistances;
+  private final EdgeList potentialEdges;
+  private final EdgeList selectedEdges;
+  private final DistanceEngine shortestDistances;
+  private final AStarSearch pathSearch;
+  private final DistanceHeuristic pathHeuristic;
   private final List<Location> initialTreasureCaves;
   private final Location start;
   private final Location finish;
-  private final Random randomGenerator;
+  private final RandomStreams randomStreams;
+  private final BuildPipeline buildPipeline;
   private final List<Monster> monsters;
   private final List<Location> monsterLocations;
   private final List<Location> initialArrowsLocations;
@@ -54,38 +60,215 @@ public class DungeonImpl implements Dungeon {
   public DungeonImpl(int rows, int columns, boolean wrapped, 
       int interConnectivity, int treasurePercentage, int monsterNumber, long randomSeed,
       boolean isTest) throws IllegalArgumentException {
+    this(rows, columns, wrapped, interConnectivity, treasurePercentage, monsterNumber, 
+        randomSeed, isTest, DistanceMode.CONTRACTED);
+  }
+  
+  /**
+   * Constructor of the dungeon that also chooses how shortest path distances are answered.
+   * Precomputation over the contracted cave graph is the default, while lazy mode keeps
+   * construction linear and memory capped for big dungeons. Any other engine, like a
+   * distance table mapped from a file, can be plugged through its own factory.
+   * @param rows number of rows of the dungeon
+   * @param columns number of columns of the dungeon
+   * @param interConnectivity connectivity level of the dungeon
+   * @param wrapped boolean that indicates if the dungeon can have wrapped connections
+   * @param treasurePercentage number between 0 and 100 indicating the percentage 
+   *     of caves containing
+   *     treasures and the percentage of locations containing crooked arrows.
+   * @param monsterNumber int that indicates the initial number of monsters in 
+   *     the dungeon. It cannot be less than 1.
+   * @param randomSeed long used to initialize pseudorandom number series to be
+   *     used for testing purposes
+   * @param isTest indicates if the instance of the game is for testing purposes
+   * @param distanceMode strategy used to answer the distances between locations
+   * @throws IllegalArgumentException when distanceMode is null
+   */
+  public DungeonImpl(int rows, int columns, boolean wrapped, 
+      int interConnectivity, int treasurePercentage, int monsterNumber, long randomSeed,
+      boolean isTest, DistanceEngineFactory distanceMode) throws IllegalArgumentException {
+    this(rows, columns, wrapped, interConnectivity, treasurePercentage, monsterNumber, 
+        randomSeed, isTest, distanceMode, GenerationStrategy.KRUSKAL);
+  }
+  
+  /**
+   * Constructor of the dungeon that also chooses how the maze is generated and how
+   * shortest path distances are answered. The generator builds a spanning tree over
+   * the locations, and the potential edges left out of it are the candidates for the
+   * extra connections required by the interconnectivity.
+   * @param rows number of rows of the dungeon
+   * @param columns number of columns of the dungeon
+   * @param interConnectivity connectivity level of the dungeon
+   * @param wrapped boolean that indicates if the dungeon can have wrapped connections
+   * @param treasurePercentage number between 0 and 100 indicating the percentage 
+   *     of caves containing
+   *     treasures and the percentage of locations containing crooked arrows.
+   * @param monsterNumber int that indicates the initial number of monsters in 
+   *     the dungeon. It cannot be less than 1.
+   * @param randomSeed long used to initialize pseudorandom number series to be
+   *     used for testing purposes
+   * @param isTest indicates if the instance of the game is for testing purposes
+   * @param distanceMode strategy used to answer the distances between locations
+   * @param generator strategy used to generate the maze of the dungeon
+   * @throws IllegalArgumentException when distanceMode or generator are null, or there
+   *     are more monsters than caves to host them
+   * @throws IllegalStateException when no start and end can be placed far enough apart
+   */
+  public DungeonImpl(int rows, int columns, boolean wrapped, 
+      int interConnectivity, int treasurePercentage, int monsterNumber, long randomSeed,
+      boolean isTest, DistanceEngineFactory distanceMode, MazeGenerator generator) 
+          throws IllegalArgumentException, IllegalStateException {
+    this(rows, columns, wrapped, interConnectivity, treasurePercentage, monsterNumber, 
+        randomSeed, isTest, distanceMode, generator, ForkJoinPool.commonPool());
+  }
+  
+  /**
+   * Constructor of the dungeon that also chooses the executor that runs the phases
+   * of the construction. The phases form a dependency graph and the ones that do not
+   * depend on each other, like the distances and the placement of the items, run
+   * concurrently. Every phase draws from its own random stream, so the dungeon does
+   * not depend on how the phases are scheduled.
+   * @param rows number of rows of the dungeon
+   * @param columns number of columns of the dungeon
+   * @param interConnectivity connectivity level of the dungeon
+   * @param wrapped boolean that indicates if the dungeon can have wrapped connections
+   * @param treasurePercentage number between 0 and 100 indicating the percentage 
+   *     of caves containing
+   *     treasures and the percentage of locations containing crooked arrows.
+   * @param monsterNumber int that indicates the initial number of monsters in 
+   *     the dungeon. It cannot be less than 1.
+   * @param randomSeed long used to initialize pseudorandom number series to be
+   *     used for testing purposes
+   * @param isTest indicates if the instance of the game is for testing purposes
+   * @param distanceMode strategy used to answer the distances between locations
+   * @param generator strategy used to generate the maze of the dungeon
+   * @param executor executor that runs the phases of the construction
+   * @throws IllegalArgumentException when distanceMode, generator or executor are null,
+   *     or there are more monsters than caves to host them
+   * @throws IllegalStateException when no start and end can be placed far enough apart
+   */
+  public DungeonImpl(int rows, int columns, boolean wrapped, 
+      int interConnectivity, int treasurePercentage, int monsterNumber, long randomSeed,
+      boolean isTest, DistanceEngineFactory distanceMode, MazeGenerator generator, 
+      Executor executor) throws IllegalArgumentException, IllegalStateException {
+    if (distanceMode == null) {
+      throw new IllegalArgumentException("Distance mode cannot be null.");
+    }
+    if (generator == null) {
+      throw new IllegalArgumentException("Generator cannot be null.");
+    }
     this.rows = rows;
     this.columns = columns;
     this.wrapped = wrapped;
     this.interConnectivity = interConnectivity;
-    boolean[][][][] initialConnections;
-    this.randomGenerator = new Random();
-    if (isTest) {
-      this.randomGenerator.setSeed(randomSeed);
-    }
-    initialConnections = this.createConnections(rows, columns, wrapped, interConnectivity);
-    this.locations = this.createLocations(rows, columns, wrapped, 
-        interConnectivity, initialConnections);
-    this.potentialEdges = this.createEdges();
-    ArrayList<Edge>[] aux = this.implemtKruskal();
-    //ArrayList<Edge> discardedEdges;
-    this.selectedEdges = aux[0];
-    //discardedEdges = aux[1];
-    this.finalConnections = this.updateConnections(rows, columns, wrapped, interConnectivity);
-    this.locations = this.createLocations(rows, columns, wrapped, 
-        interConnectivity, this.finalConnections);
-    this.shortestDistances = this.calculateShortestDistances();
-    this.initialTreasureCaves = this.locateTreasures(this.locations, treasurePercentage);
-    Location[] startFinish = this.setStartEnd();
-    this.start = startFinish[0];
-    this.finish = startFinish[1];
-    this.monsters = this.setMonsters(monsterNumber);
+    // Every phase draws from its own stream of the seed, so test dungeons are
+    // reproducible from it.
+    this.randomStreams = new RandomStreams(isTest ? randomSeed 
+        : new SplittableRandom().nextLong());
+    this.buildPipeline = new BuildPipeline(executor);
+    BuildPipeline pipeline = this.buildPipeline;
+    
+    CompletableFuture<ConnectionGrid> maze = pipeline.stage(BuildPhase.MAZE, 
+        () -> generator.generate(rows, columns, wrapped, 
+            this.randomStreams.forPhase(GenerationPhase.MAZE).nextLong()));
+    CompletableFuture<long[]> potential = pipeline.stage(BuildPhase.EDGES, this::createEdges);
+    CompletableFuture<long[]> selected = pipeline.stage(BuildPhase.KRUSKAL, 
+        () -> this.implemtKruskal(maze.join(), potential.join())[0], 
+        BuildPhase.MAZE, BuildPhase.EDGES);
+    CompletableFuture<ConnectionGrid> connections = pipeline.stage(BuildPhase.CONNECTIONS, 
+        () -> this.updateConnections(rows, columns, selected.join()), BuildPhase.KRUSKAL);
+    
+    // Everything else only needs the final connections.
+    CompletableFuture<CaveGraph> caves = pipeline.stage(BuildPhase.CAVE_GRAPH, 
+        () -> new CaveGraph(connections.join()), BuildPhase.CONNECTIONS);
+    CompletableFuture<Location[][]> grid = pipeline.stage(BuildPhase.LOCATIONS, 
+        () -> this.createLocations(rows, columns, wrapped, interConnectivity, 
+            connections.join()), BuildPhase.CONNECTIONS);
+    CompletableFuture<DistanceEngine> distances = pipeline.stage(BuildPhase.DISTANCES, 
+        () -> this.calculateShortestDistances(distanceMode, connections.join()), 
+        BuildPhase.CONNECTIONS);
+    CompletableFuture<ItemPlacement> items = pipeline.stage(BuildPhase.ITEMS, 
+        () -> new ItemPlacement(connections.join(), treasurePercentage, 
+            this.randomStreams.forPhase(GenerationPhase.ITEMS)), BuildPhase.CONNECTIONS);
+    CompletableFuture<int[]> startFinish = pipeline.stage(BuildPhase.START_FINISH, 
+        () -> this.setStartEnd(connections.join()), BuildPhase.CONNECTIONS);
+    
+    // Treasures, arrows and monsters are stored in different fields of the locations.
+    CompletableFuture<List<Location>> treasures = pipeline.stage(BuildPhase.TREASURES, 
+        () -> this.locateTreasures(grid.join(), items.join()), 
+        BuildPhase.LOCATIONS, BuildPhase.ITEMS);
+    CompletableFuture<List<Monster>> monsters = pipeline.stage(BuildPhase.MONSTERS, 
+        () -> this.setMonsters(monsterNumber, grid.join(), caves.join(), startFinish.join()), 
+        BuildPhase.LOCATIONS, BuildPhase.CAVE_GRAPH, BuildPhase.START_FINISH);
+    CompletableFuture<List<Location>> arrows = pipeline.stage(BuildPhase.ARROWS, 
+        () -> this.locateArrows(grid.join(), items.join()), 
+        BuildPhase.LOCATIONS, BuildPhase.ITEMS);
+    
+    // The phases that can reject the arguments are awaited first, so a failure
+    // surfaces without waiting for the distances.
+    this.finalConnections = pipeline.await(connections);
+    int[] pair = pipeline.await(startFinish);
+    this.monsters = pipeline.await(monsters);
+    this.caveGraph = pipeline.await(caves);
+    this.locations = pipeline.await(grid);
+    this.start = this.locations[pair[0] / columns][pair[0] % columns];
+    this.finish = this.locations[pair[1] / columns][pair[1] % columns];
     this.monsterLocations = new ArrayList<Location>();
     this.monsters.stream().forEach(m -> this.monsterLocations.add(m.getLocation()));
-    this.initialArrowsLocations = this.locateArrows(this.locations, treasurePercentage);
+    this.potentialEdges = new EdgeList(pipeline.await(potential), this.locations);
+    this.selectedEdges = new EdgeList(pipeline.await(selected), this.locations);
+    this.initialTreasureCaves = pipeline.await(treasures);
+    this.shortestDistances = pipeline.await(distances);
+    this.pathSearch = new AStarSearch(this.finalConnections);
+    this.pathHeuristic = new ManhattanHeuristic(rows, columns, wrapped);
+    this.initialArrowsLocations = pipeline.await(arrows);
     
   }
 
+  /**
+   * Getter of the final connections of the dungeon, used by analysis tools that build
+   * their own distance engines over it.
+   * @return connection grid of the dungeon.
+   */
+  ConnectionGrid getConnectionGrid() {
+    return this.finalConnections;
+  }
+  
+  /**
+   * Getter of the seed the dungeon was generated from, which generates the same
+   * dungeon again with the same arguments.
+   * @return long with the seed.
+   */
+  long getSeed() {
+    return this.randomStreams.getSeed();
+  }
+  
+  /**
+   * Getter of the pipeline that built the dungeon, which reports the duration and
+   * the critical path of every phase of the construction.
+   * @return build pipeline of the dungeon.
+   */
+  BuildPipeline getBuildPipeline() {
+    return this.buildPipeline;
+  }
+  
+  /**
+   * Getter of the pairs of neighbour locations that could be connected.
+   * @return list with every potential edge of the dungeon once.
+   */
+  EdgeList getPotentialEdges() {
+    return this.potentialEdges;
+  }
+  
+  /**
+   * Getter of the connections of the dungeon, the spanning tree plus the extra
+   * connections of the interconnectivity.
+   * @return list with every connection of the dungeon once.
+   */
+  EdgeList getSelectedEdges() {
+    return this.selectedEdges;
+  }
+
   @Override
   public Location[][] getLocations() {
     return this.locations;
@@ -96,7 +279,7 @@ public class DungeonImpl implements Dungeon {
     if (a == null || b == null) {
       throw new IllegalArgumentException("Locations cannot be null.");
     }
-    return this.finalConnections[a.getRow()][a.getColumn()][b.getRow()][b.getColumn()];
+    return this.finalConnections.isConnected(a.getRow(), a.getColumn(), b.getRow(), b.getColumn());
   }
 
   @Override
@@ -127,14 +310,14 @@ public class DungeonImpl implements Dungeon {
    * @param columns int number with the number of columns of the dungeon.
    * @param wrapped boolean that indicates if the dungeon can have wrapped connections
    * @param interConnectivity connectivity level of the dungeon
-   * @param connections fourth dimensional array already set indicating for each pair of locations
+   * @param connections grid already set indicating for each pair of neighbour locations
    *     if there will be a connection between them.
    * @return a two dimensional matrix that indicates their physical position in the dungeon,
    *     in terms of rows and columns.
    * @throws IllegalArgumentException when connections are null or rows, cols non-positive
    */
   private Location[][] createLocations(int rows, int columns, 
-      boolean wrapped, int interConnectivity,  boolean[][][][] connections) 
+      boolean wrapped, int interConnectivity,  ConnectionGrid connections) 
           throws IllegalArgumentException {
     
     if (rows < 1 || columns < 1) {
@@ -185,10 +368,10 @@ public class DungeonImpl implements Dungeon {
         }
         
         
-        boolean southConnection = connections[i][j][south][j];
-        boolean northConnection = connections[i][j][north][j];
-        boolean eastConnection = connections[i][j][i][east];
-        boolean westConnection = connections[i][j][i][west];
+        boolean southConnection = connections.isConnected(i, j, south, j);
+        boolean northConnection = connections.isConnected(i, j, north, j);
+        boolean eastConnection = connections.isConnected(i, j, i, east);
+        boolean westConnection = connections.isConnected(i, j, i, west);
 
         connectionsNumber += southConnection ? 1 : 0;
         connectionsNumber += northConnection ? 1 : 0;
@@ -213,176 +396,104 @@ public class DungeonImpl implements Dungeon {
   }
   
   /**
-   * Helper method that judges for each pair of nodes if they should be connected.
-   * This depends on randomness but also the logic of the dungeon creation, if it is wrapped 
-   * and the interconnectivity index. This connections are created BEFORE running Kruskal's 
-   * algorithm.
-   * @param rows int number with the number of rows of the dungeon.
-   * @param columns int number with the number of columns of the dungeon.
-   * @param wrapped boolean that indicates if the dungeon can have wrapped connections
-   * @param interConnectivity connectivity level of the dungeon
-   * @return a four dimensional matrix that indicates their a pair of edges referenced
-   *     by their numerical position indexes, are connected.
-   * @throws IllegalArgumentException if rows or cols are non positive
+   * Helper method that packs an edge for each pair of neighbour locations that could
+   * be connected. Each pair appears once, even when the locations are neighbours in
+   * more than one direction.
+   * @return an array with the keys of all the edges.
    */
-  private boolean[][][][] createConnections(int rows, int columns, 
-      boolean wrapped, int interConnectivity) throws IllegalArgumentException {
-    
-    if (rows < 1 || columns < 1) {
-      throw new IllegalArgumentException("Rows and columns need to be positive integers.");
-    }
-    
-    // We we start with a preset matrix entirely connected.
-    boolean[][][][] connections = new boolean[rows][columns][rows][columns];
-    Random rd = new Random();
+  private long[] createEdges() {
+    ConnectionGrid seen = new ConnectionGridImpl(this.rows, this.columns);
+    long[] edges = new long[2 * this.rows * this.columns];
+    int count = 0;
     
     for (int i = 0; i < rows; i++) {
       for (int j = 0; j < columns; j++) {
-        int[][] neighbourIndexes = this.getNeighbourIndexes(i, j, wrapped);
-        boolean[] aux = new boolean[4];
+        int[][] neighbourIndexes = this.getNeighbourIndexes(i, j, this.wrapped);
         for (int k = 0; k < 4; k++) {
-          int neighbourRow = neighbourIndexes[k][0];
-          int neighbourCol = neighbourIndexes[k][1];
-          if (neighbourRow == -1 || neighbourCol == -1) {
+          int row = neighbourIndexes[k][0];
+          int col = neighbourIndexes[k][1];
+          if (row == -1 || col == -1 || (row == i && col == j) 
+              || seen.isConnected(i, j, row, col)) {
             continue;
           }
-          else {
-            aux[k] = rd.nextBoolean();
-            connections[i][j][neighbourRow][neighbourCol] = aux[k];
-          }
-        }
-        // If no connection was generated, we add one.
-        if (!Arrays.asList(aux).contains(true)) {
-          boolean aux2 = true;
-          while (aux2) {
-            int randomNum = this.randomGenerator.nextInt(3 + 1);
-            int neighbourRow = neighbourIndexes[randomNum][0];
-            int neighbourCol = neighbourIndexes[randomNum][1];
-            if (neighbourRow == -1 || neighbourCol == -1) {
-              continue;
-            }
-            else {
-              connections[i][j][neighbourRow][neighbourCol] = true;
-              aux2 = false;
-            }
-            
-          }
+          seen.addConnection(i, j, row, col);
+          seen.addConnection(row, col, i, j);
+          edges[count++] = EdgeList.key(i * this.columns + j, row * this.columns + col);
         }
       }
     }
     
-    return connections;
+    return Arrays.copyOf(edges, count);
   }
   
   /**
-   * Helper method that create edge objects for each pair of locations that are connected.
-   * @return an ArrayList with all edges inside.
+   * Helper method to build the engine that answers shortest path queries over
+   * the final connections of the dungeon.
+   * @param distanceMode strategy used to answer the distances between locations
+   * @param connections final connections of the dungeon
+   * @return distance engine holding the number of steps between each pair of locations.
    */
-  private ArrayList<Edge> createEdges() {
-    ArrayList<Edge> edges = new ArrayList<Edge>();
-    
-    for (int i = 0; i < rows; i++) {
-      for (int j = 0; j < columns; j++) {
-        if (this.locations[i][j].getNorth() != null) {
-          int[] destIndex = locations[i][j].getNorth();
-          int row = destIndex[0];
-          int col = destIndex[1];
-          Edge edge = new EdgeImpl(locations[i][j], locations[row][col]);
-          edges.add(edge);
-        }
-        if (this.locations[i][j].getSouth() != null) {
-          int[] destIndex = locations[i][j].getSouth();
-          int row = destIndex[0];
-          int col = destIndex[1];
-          Edge edge = new EdgeImpl(locations[i][j], locations[row][col]);
-          edges.add(edge);
-        }
-        if (this.locations[i][j].getEast() != null) {
-          int[] destIndex = locations[i][j].getEast();
-          int row = destIndex[0];
-          int col = destIndex[1];
-          Edge edge = new EdgeImpl(locations[i][j], locations[row][col]);
-          edges.add(edge);
-        }
-        if (this.locations[i][j].getWest() != null) {
-          int[] destIndex = locations[i][j].getWest();
-          int row = destIndex[0];
-          int col = destIndex[1];
-          Edge edge = new EdgeImpl(locations[i][j], locations[row][col]);
-          edges.add(edge);
-        }
-      }
-    }
-    
-    return edges;
+  private DistanceEngine calculateShortestDistances(DistanceEngineFactory distanceMode, 
+      ConnectionGrid connections) {
+    return distanceMode.createEngine(connections);
   }
   
-  /**
-   * Floyd-Warshall algorithm implementation to obtain shortest path between all nodes of a graph.
-   * @return a 4 dimension matrix indicating the distance (number of steps) between each pair
-   *     of nodes referenced by their phisical position indexes.
-   */
-  private int[][][][] calculateShortestDistances() {
-    int[][][][] dist = new int[this.rows][this.columns][this.rows][this.columns];
-    
-    for (int i = 0; i < this.rows; i++) {
-      for (int j = 0; j < this.columns; j++) {
-        for (int k = 0; k < this.rows; k++) {
-          Arrays.fill(dist[i][j][k], 9999999);
-        }
-      }
+  @Override
+  public int getPathDistance(Location origin, Location destination) 
+      throws IllegalArgumentException {
+    if (origin == null || destination == null) {
+      throw new IllegalArgumentException("Locations cannot be null.");
     }
-    
-    // We iterate over the edges and include those connections in the distance matrix. 
-    // We consider edges to be non-directed.
-    
-    this.selectedEdges.forEach((edge) -> {
-      dist[edge.getOrigin().getRow()][edge.getOrigin().getColumn()]
-          [edge.getDestination().getRow()][edge.getDestination().getColumn()] = 1;
-      dist[edge.getDestination().getRow()][edge.getDestination().getColumn()]
-          [edge.getOrigin().getRow()][edge.getOrigin().getColumn()] = 1;
-    });
-    
-    // We also set the diagonal of the matrix to be zero.
-    for (int i = 0; i < this.rows; i++) {
-      for (int j = 0; j < this.columns; j++) {
-        dist[i][j][i][j] = 0;
-      }
+    // Connections are non-directed, so the distance is the same in both senses.
+    int response = this.shortestDistances.getDistance(
+        this.finalConnections.getCellId(origin.getRow(), origin.getColumn()),
+        this.finalConnections.getCellId(destination.getRow(), destination.getColumn()));
+    return response;
+  }
+  
+  @Override
+  public List<Location> getPath(Location origin, Location destination) 
+      throws IllegalArgumentException {
+    List<Location> path = new ArrayList<Location>();
+    for (int cell : this.findPath(origin, destination)) {
+      path.add(this.getLocation(cell));
     }
-    
-    // Now the main part of the loop, where we have to examine all possible nodes trios.
-    for (int i = 0; i < this.rows; i++) {
-      for (int j = 0; j < this.columns; j++) {
-        for (int k = 0; k < this.rows; k++) {
-          for (int l = 0; l < this.columns; l++) {
-            for (int m = 0; m < this.rows; m++) {
-              for (int n = 0; n < this.columns; n++) {
-                int distOld = dist[i][j][k][l];
-                int distNew = dist[i][j][m][n] + dist[m][n][k][l];
-                if (distOld > distNew) {
-                  dist[i][j][k][l] = dist[i][j][m][n] + dist[m][n][k][l];
-                }
-              }
-            }
-          }
+    return path;
+  }
+  
+  @Override
+  public List<Direction> getPathDirections(Location origin, Location destination) 
+      throws IllegalArgumentException {
+    int[] cells = this.findPath(origin, destination);
+    List<Direction> directions = new ArrayList<Direction>();
+    for (int i = 1; i < cells.length; i++) {
+      for (Direction dir : Direction.values()) {
+        if (this.finalConnections.getNeighbour(cells[i - 1], dir) == cells[i]) {
+          directions.add(dir);
+          break;
         }
       }
     }
-    
-    return dist;
+    return directions;
   }
   
-  @Override
-  public int getPathDistance(Location origin, Location destination) 
+  /**
+   * Helper method that runs an A* search between two locations. The buffers of the
+   * search are reused between calls, so no table of all pairs is needed.
+   * @param origin Location where the path starts
+   * @param destination Location where the path ends
+   * @return array with the cell ids of the path, or an empty array if unreachable
+   * @throws IllegalArgumentException when origin or destination are null
+   */
+  private int[] findPath(Location origin, Location destination) 
       throws IllegalArgumentException {
     if (origin == null || destination == null) {
       throw new IllegalArgumentException("Locations cannot be null.");
     }
-    int response  = Math.min(this.shortestDistances[origin.getRow()]
-        [origin.getColumn()][destination.getRow()][destination.getColumn()],
-        this.shortestDistances[destination.getRow()][destination.getColumn()]
-            [origin.getRow()][origin.getColumn()]);
-    return response;
+    return this.pathSearch.findPath(
+        this.finalConnections.getCellId(origin.getRow(), origin.getColumn()),
+        this.finalConnections.getCellId(destination.getRow(), destination.getColumn()),
+        this.pathHeuristic);
   }
   
   /**
@@ -446,7 +557,7 @@ public class DungeonImpl implements Dungeon {
     else if (r == 0) {
       if (wrapped) {
         indexes[0][0] = r + 1;
-        indexes[1][0] = columns - 1; 
+        indexes[1][0] = rows - 1; 
       }
       else {
         indexes[0][0] = r + 1;
@@ -464,82 +575,57 @@ public class DungeonImpl implements Dungeon {
   /**
    * Helper method that judges for each pair of nodes if they should be connected 
    * to form a minimum spanning tree.
-   * This algorithm starts with the previous implementation of all potential connections obtained
-   * in the createConnections helper method.
-   * @return an arrayList with all the new edges. It considers the interConnectivityIndex
+   * Only the potential edges that are part of the spanning tree built by the maze
+   * generator are accepted, and the rest are kept as candidates for interconnectivity.
+   * @param spanningTree connection grid with the maze built by the generator
+   * @param potentialEdges keys of every pair of neighbour locations, each one once
+   * @return two arrays with the keys of the selected and discarded edges. The selected
+   *     ones consider the interConnectivityIndex
    */
-  private ArrayList<Edge>[] implemtKruskal() {
+  private long[][] implemtKruskal(ConnectionGrid spanningTree, long[] potentialEdges) {
     
-    // We have already created randomly a series of potential edges.
-    // We will need two edge lists to store desired and undesired edges.
-    ArrayList<Edge> selectedEdges = new ArrayList<Edge>();
-    ArrayList<Edge> discardedEdges = new ArrayList<Edge>();
+    // We will need two edge arrays to store desired and undesired edges.
+    long[] selectedEdges = new long[potentialEdges.length];
+    long[] discardedEdges = new long[potentialEdges.length];
+    int selectedCount = 0;
+    int discardedCount = 0;
     
-    // We also need a list of sets containing nodes
-    ArrayList<HashSet<Location>> nodeSets = new ArrayList<HashSet<Location>>();
-    for (int i = 0; i < rows; i++) {
-      for (int j = 0; j < columns; j++) {
-        HashSet<Location> aux = new HashSet<Location>();
-        aux.add(this.locations[i][j]);
-        nodeSets.add(aux);
-      }
-    }
+    // We also need the family of disjoint sets containing nodes, referenced by their
+    // dense id (row * columns + column). Every node starts in its own subset.
+    DisjointSet nodeSets = new DisjointSetImpl(this.rows * this.columns);
     
     // Now we iterate over the edges adding them to join disjunct subsets in case they do so.
     
-    for (Edge e : this.potentialEdges) {
-      Location o = e.getOrigin();
-      Location d = e.getDestination();
+    for (long e : potentialEdges) {
+      int originId = (int) (e >>> 32);
+      int destinationId = (int) e;
       
-      for (Iterator<HashSet<Location>> r = nodeSets.iterator(); r.hasNext(); ) {
-        HashSet<Location> subset = r.next();
-        if (subset.contains(o)) {
-          if (subset.contains(d)) {
-            discardedEdges.add(e);
-          }
-          else if (subset.size() > 0) {
-            selectedEdges.add(e);
-            //subset.add(d);
-            for (Iterator<HashSet<Location>> r2 = nodeSets.iterator(); r2.hasNext(); ) {
-              HashSet<Location> subset2 = r2.next();
-              if (subset2.contains(d) && !subset2.equals(subset)) {
-                subset.addAll(subset2);
-                subset2.clear();
-                //subset2.remove(d);
-                //r2.remove();
-              }
-            }
-          }
-        }
-      }  
-    }
-         
-    int counter = -1;
-    for (int i = 0; i < this.interConnectivity; i++) {
-      boolean uselessEdge = true;
-      while (uselessEdge) {
-        counter = counter + 1;
-        uselessEdge = false;
-        Edge e = discardedEdges.get(counter);
-        String dir1 = e.getDir1();
-        String dir2 = e.getDir2();
-        for (Edge ed: selectedEdges) {
-          if (ed.getDir1().equals(dir1) || ed.getDir1().equals(dir2)) {
-            uselessEdge = true;
-            break;
-          }
-        }
+      if (spanningTree.isConnected(originId / this.columns, originId % this.columns, 
+          destinationId / this.columns, destinationId % this.columns) 
+          && nodeSets.union(originId, destinationId)) {
+        selectedEdges[selectedCount++] = e;
       }
-      if (!uselessEdge) {
-        selectedEdges.add(discardedEdges.get(counter));
-        discardedEdges.remove(counter);
+      else {
+        discardedEdges[discardedCount++] = e;
       }
-      
     }
     
-    ArrayList<Edge>[] result = new ArrayList[2];
-    result[0] = selectedEdges;
-    result[1] = discardedEdges;
+    // The extra connections are a uniform sample without replacement among the
+    // discarded edges, which are already free of repetitions. When there are fewer
+    // edges than requested, all are taken.
+    int extraEdges = Math.min(Math.max(this.interConnectivity, 0), discardedCount);
+    SplittableRandom random = this.randomStreams.forPhase(GenerationPhase.INTERCONNECTIVITY);
+    for (int i = 0; i < extraEdges; i++) {
+      int j = i + random.nextInt(discardedCount - i);
+      long aux = discardedEdges[i];
+      discardedEdges[i] = discardedEdges[j];
+      discardedEdges[j] = aux;
+      selectedEdges[selectedCount++] = discardedEdges[i];
+    }
+    
+    long[][] result = new long[2][];
+    result[0] = Arrays.copyOf(selectedEdges, selectedCount);
+    result[1] = Arrays.copyOfRange(discardedEdges, extraEdges, discardedCount);
     
     return result;
   }
@@ -547,23 +633,26 @@ public class DungeonImpl implements Dungeon {
   /**
    * Helper method to update the connections of the Dungeon object after Kruskal's
    * algorithm has runned.
-   * @return a four dimensional matrix that indicates their a pair of edges referenced
+   * @param rows number of rows of the dungeon
+   * @param columns number of columns of the dungeon
+   * @param edges keys of the selected edges
+   * @return a connection grid that indicates if a pair of neighbour locations referenced
    *     by their numerical position indexes, are connected.
    */
-  private boolean[][][][] updateConnections(int rows, int columns, 
-      boolean wrapped, int interConnectivity) throws IllegalArgumentException {
+  private ConnectionGrid updateConnections(int rows, int columns, long[] edges) 
+      throws IllegalArgumentException {
     
-    // take the edges and update the connections matrix from that information.
-    boolean[][][][] connections = new boolean[rows][columns][rows][columns];
+    // take the edges and update the connections grid from that information.
+    ConnectionGrid connections = new ConnectionGridImpl(rows, columns);
     
-    for (Edge e : this.selectedEdges) {
-      int originRow = e.getOrigin().getRow();
-      int originColumn = e.getOrigin().getColumn();
-      int destinationRow = e.getDestination().getRow();
-      int destinationColumn = e.getDestination().getColumn();
+    for (long e : edges) {
+      int originRow = (int) (e >>> 32) / columns;
+      int originColumn = (int) (e >>> 32) % columns;
+      int destinationRow = (int) e / columns;
+      int destinationColumn = (int) e % columns;
       
-      connections[originRow][originColumn][destinationRow][destinationColumn] = true;
-      connections[destinationRow][destinationColumn][originRow][originColumn] = true;
+      connections.addConnection(originRow, originColumn, destinationRow, destinationColumn);
+      connections.addConnection(destinationRow, destinationColumn, originRow, originColumn);
     }
         
     return connections;
@@ -572,37 +661,19 @@ public class DungeonImpl implements Dungeon {
   /**
    * Helper method to locate Treasures in the caves of the dungeon.
    * @param locations all potential locations to be considered
-   * @param treasurePercentage 0 to 100 int number indicating the percentage of caves that will
-   *     store treasures
+   * @param items placement of the items of the dungeon
    * @return a list with the locations selected to host treasures, with their treasures already
    *     placed.
    */
-  private List<Location> locateTreasures(Location[][] locations, int treasurePercentage) {
-    List<Location> caves = new ArrayList<Location>();
+  private List<Location> locateTreasures(Location[][] locations, ItemPlacement items) {
+    int[] cells = items.getTreasureCells();
+    ItemType[] types = items.getTreasureTypes();
+    List<Location> caves = new ArrayList<Location>(cells.length);
     
-    for (int i = 0; i < this.rows; i++) {
-      for (int j = 0; j < this.columns; j++) {
-        if (locations[i][j].getType().equals(LocationType.CAVE)) {
-          caves.add(locations[i][j]);
-        }
-      }
-    }
-    
-    int cavesNum = caves.size();
-    for (int i = 0; i < cavesNum; i++) {
-      int randomNum = this.randomGenerator.nextInt(100 - 1) + 1; 
-      if (randomNum < treasurePercentage) {
-        int trasureType = randomNum % 3;
-        if (trasureType == 0) {
-          caves.get(i).setTreasure(new TreasureImpl(ItemType.DIAMOND));
-        }
-        else if (trasureType == 1) {
-          caves.get(i).setTreasure(new TreasureImpl(ItemType.RUBY));
-        }
-        else if (trasureType == 2) {
-          caves.get(i).setTreasure(new TreasureImpl(ItemType.SAPPHIRE));
-        }
-      }
+    for (int i = 0; i < cells.length; i++) {
+      Location cave = locations[cells[i] / this.columns][cells[i] % this.columns];
+      cave.setTreasure(new TreasureImpl(types[i]));
+      caves.add(cave);
     }
         
     return caves;
@@ -611,102 +682,87 @@ public class DungeonImpl implements Dungeon {
   /**
    * Helper method to locate Arrows in the locations (caves and tunnels) of the dungeon.
    * @param locations all potential locations to be considered
-   * @param treasurePercentage 0 to 100 int number indicating the percentage of locations that will
-   *     store treasures. It is the same number used for locateTreasure
+   * @param items placement of the items of the dungeon
    * @return a list with the locations selected to host arrows, with their arrows already placed.
    */
-  private List<Location> locateArrows(Location[][] locations, int treasurePercentage) {
-    List<Location> locationsList = new ArrayList<Location>();
-    List<Location> result = new ArrayList<Location>();
+  private List<Location> locateArrows(Location[][] locations, ItemPlacement items) {
+    int[] cells = items.getArrowCells();
+    List<Location> result = new ArrayList<Location>(cells.length);
     
-    // Putting locations in a list.
-    for (Location[] array : this.locations) {
-      locationsList.addAll(Arrays.asList(array));
-    }
-    
-    // Shuffling the list of locations.
-    Random r1 = new Random();
-    
-    for (int i = locationsList.size() - 1; i >= 1; i--) {
-      // swapping current index value
-      // with random index value
-      Collections.swap(locationsList, i, r1.nextInt(i + 1));
-    }
-
-    // Adding arrows at a random pace.
-    for (int i = 0; i < locationsList.size(); i++) {
-      int randomNum = this.randomGenerator.nextInt(100 - 1) + 1; 
-      if (randomNum < treasurePercentage) {
-        locationsList.get(i).setArrow(new ArrowImpl());
-        result.add(locationsList.get(i));
-      }
+    for (int cell : cells) {
+      Location location = locations[cell / this.columns][cell % this.columns];
+      location.setArrow(new ArrowImpl());
+      result.add(location);
     }
         
     return result;
   }
   
   /**
-   * Helper method to tag two locations (CAVES) as start and end
-   * complying with their distance requirement.
-   * @return two dimension array with both locations 0->start 1->end
+   * Helper method to tag two locations as start and end complying with their
+   * distance requirement. The end is always a cave.
+   * @param connections final connections of the dungeon
+   * @return array with the numerical ids of both locations 0->start 1->end
+   * @throws IllegalStateException when no pair of locations is far enough apart
    */
-  private Location[] setStartEnd() {
-    boolean found = false;
-    Location[] result = new Location[2];
-
-    while (!found) {
-      int startRow = this.randomGenerator.nextInt(this.rows);
-      int startColumn = this.randomGenerator.nextInt(this.columns);
-      int endRow = this.randomGenerator.nextInt(this.rows);
-      int endColumn = this.randomGenerator.nextInt(this.columns);
-      
-      Location start = this.locations[startRow][startColumn];
-      Location end = this.locations[endRow][endColumn];
-      
-      int distance = this.getPathDistance(start, end);
-      
-      if ((distance >= 5 && distance < 999999) & end.getType().equals(LocationType.CAVE)) {
-        found = true;
-        result[0] = start;
-        result[1] = end;
-      }
+  private int[] setStartEnd(ConnectionGrid connections) throws IllegalStateException {
+    int[] pair = new StartFinishSelector(connections)
+        .select(START_FINISH_DISTANCE, START_ATTEMPTS, 
+            this.randomStreams.forPhase(GenerationPhase.START_FINISH));
+    if (pair.length == 0) {
+      throw new IllegalStateException("No start and end locations are " 
+          + START_FINISH_DISTANCE + " steps apart in the dungeon.");
     }
     
-    return result;  
+    return pair;  
   }
   
   /**
    * Helper method to create and locate monsters in caves of the dungeon.
    * The first monster is set in the finish location and the rest in 
-   * a random cave.
+   * random caves other than the start, each one in a different cave.
    * @param monsterNumber int with the number of monsters of the dungeon
+   * @param locations all potential locations to be considered
+   * @param caves cave graph of the dungeon
+   * @param startFinish array with the numerical ids of the start and the finish
    * @return list with created monster objects
+   * @throws IllegalArgumentException when there are not enough caves for the monsters
    */
-  private List<Monster> setMonsters(int monsterNumber) {
-    int monsterCounter = 0;
+  private List<Monster> setMonsters(int monsterNumber, Location[][] locations, 
+      CaveGraph caves, int[] startFinish) throws IllegalArgumentException {
     List<Monster> monsters = new ArrayList<Monster>();
     
+    // Index of the caves that can host the rest of the monsters.
+    int startId = startFinish[0];
+    int finishId = startFinish[1];
+    int[] eligibleCaves = new int[caves.getCaveCount()];
+    int eligibleCount = 0;
+    for (int i = 0; i < eligibleCaves.length; i++) {
+      int cave = caves.getCave(i);
+      if (cave != startId && cave != finishId) {
+        eligibleCaves[eligibleCount++] = cave;
+      }
+    }
+    int extraMonsters = Math.max(monsterNumber - 1, 0);
+    if (extraMonsters > eligibleCount) {
+      throw new IllegalArgumentException("The dungeon only has room for " 
+          + (eligibleCount + 1) + " monsters.");
+    }
+    
     // Base case, first monster goes in the finish location.
-    Monster firstMonster = new MonsterImpl(this.finish);
+    Monster firstMonster = new MonsterImpl(locations[finishId / this.columns]
+        [finishId % this.columns]);
     monsters.add(firstMonster);
-    monsterCounter ++;
     
-    // Rest of the monsters.
-    while (monsterCounter < monsterNumber) {
-      int locationRow = this.randomGenerator.nextInt(this.rows);
-      int locationColumn = this.randomGenerator.nextInt(this.columns);
-
-      Location loc = this.locations[locationRow][locationColumn];
-      
-      if ((loc.equals(this.start) || loc.getType() == LocationType.TUNNEL) || loc.hasMonster()) {
-        continue;
-      }
-      else {
-        Monster m = new MonsterImpl(loc);
-        monsters.add(m);
-        monsterCounter ++;
-        
-      }
+    // Rest of the monsters, in the first caves of a partial shuffle of the index.
+    SplittableRandom random = this.randomStreams.forPhase(GenerationPhase.MONSTERS);
+    for (int i = 0; i < extraMonsters; i++) {
+      int j = i + random.nextInt(eligibleCount - i);
+      int cave = eligibleCaves[j];
+      eligibleCaves[j] = eligibleCaves[i];
+      eligibleCaves[i] = cave;
+      Monster m = new MonsterImpl(locations[cave / this.columns][cave % this.columns]);
+      monsters.add(m);
     }
     
     return monsters;
@@ -745,68 +801,121 @@ public class DungeonImpl implements Dungeon {
     }
     List<Location> monsterLocations = new ArrayList<Location>();
     this.monsters.stream().forEach(m -> monsterLocations.add(m.getLocation()));
-    List<Location> neighbors = new ArrayList<Location>();
-    int r;
-    int c;
     
     // First if we are inside a monster cave, we report no smell.
     if (monsterLocations.contains(l)) {
       return Smell.NO_SMELL;
     }
     
-    if (l.getNorth() != null) {
-      r = l.getNorth()[0];
-      c = l.getNorth()[1];
-      neighbors.add(this.locations[r][c]);
-    }
-    if (l.getSouth() != null) {
-      r = l.getSouth()[0];
-      c = l.getSouth()[1];
-      neighbors.add(this.locations[r][c]);
-    }
-    if (l.getEast() != null) {
-      r = l.getEast()[0];
-      c = l.getEast()[1];
-      neighbors.add(this.locations[r][c]);
-    }
-    if (l.getWest() != null) {
-      r = l.getWest()[0];
-      c = l.getWest()[1];
-      neighbors.add(this.locations[r][c]);
+    // Monsters only dwell in caves, so only the caves up to two steps away matter. 
+    // Those behind a tunnel are reached with a single jump of the cave graph.
+    int cell = this.finalConnections.getCellId(l.getRow(), l.getColumn());
+    boolean lessPungent = false;
+    for (Direction dir : Direction.values()) {
+      int cave = this.caveGraph.getJumpTarget(cell, dir);
+      if (cave == -1 || this.caveGraph.getJumpSteps(cell, dir) > 2) {
+        continue;
+      }
+      Location n = this.getLocation(cave);
+      if (this.caveGraph.getJumpSteps(cell, dir) == 1) {
+        if (n.hasMonster()) {
+          return Smell.MORE_PUNGENT;
+        }
+        if (primarySearch && !monsterLocations.contains(n)) {
+          lessPungent = lessPungent || this.hasAdjacentMonster(cave);
+        }
+      }
+      else if (primarySearch && n.hasMonster()) {
+        lessPungent = true;
+      }
     }
+    return lessPungent ? Smell.LESS_PUNGENT : Smell.NO_SMELL;
     
-    if (this.checkMonster(monsterLocations, neighbors)) {
-      return Smell.MORE_PUNGENT;
-    }
-    else if (primarySearch) {
-      //Check in every neighbor if we get a MORE_PUNGENT return
-      Smell aux = Smell.NO_SMELL;
-      for (Location n : neighbors) {
-        aux = this.checkSmell(n, false);
-        if (aux.equals(Smell.MORE_PUNGENT)) {
-          return Smell.LESS_PUNGENT;
+  }
+  
+  @Override
+  public Location getArrowDestination(Location shotStart, Direction dir, int distance) 
+      throws IllegalArgumentException {
+    if (shotStart == null || dir == null) {
+      throw new IllegalArgumentException("Start location and direction cannot be null.");
+    }
+    if (distance < 1) {
+      throw new IllegalArgumentException("Distance has to be positive.");
+    }
+    if (!shotStart.getPossibleDirections().contains(dir)) {
+      return shotStart;
+    }
+    int[] first;
+    switch (dir) {
+      case NORTH:
+        first = shotStart.getNorth();
+        break;
+      case SOUTH:
+        first = shotStart.getSouth();
+        break;
+      case EAST:
+        first = shotStart.getEast();
+        break;
+      default:
+        first = shotStart.getWest();
+    }
+    int cell = this.finalConnections.getCellId(first[0], first[1]);
+    Direction moving = dir;
+    
+    // A tunnel next to the start is left through its other exit up to the next cave.
+    if (!this.caveGraph.isCave(cell)) {
+      for (Direction exit : Direction.values()) {
+        if (exit != CaveGraph.opposite(dir) 
+            && this.finalConnections.getNeighbour(cell, exit) != -1) {
+          moving = exit;
+          break;
         }
       }
+      int cave = this.caveGraph.getJumpTarget(cell, moving);
+      if (cave == -1) {
+        // The tunnels form a ring without caves, so the arrow never lands.
+        return shotStart;
+      }
+      moving = this.caveGraph.getJumpArrival(cell, moving);
+      cell = cave;
     }
-    return Smell.NO_SMELL;
     
+    // From then on arrows jump from cave to cave, following the tunnels on the way,
+    // and only keep going through a cave if it has an exit straight ahead.
+    int passedCaves = 1;
+    while (passedCaves < distance && this.finalConnections.getNeighbour(cell, moving) != -1) {
+      Direction arrival = this.caveGraph.getJumpArrival(cell, moving);
+      cell = this.caveGraph.getJumpTarget(cell, moving);
+      moving = arrival;
+      passedCaves++;
+    }
+    return this.getLocation(cell);
   }
   
-  
   /**
-   * Helper method to figure out if a monster is present in a list of locations.
-   * @param monsterLocations list of locations where monsters dwell
-   * @param checkingLocations list of locations to be checked
-   * @return true if a monster dwells inside any of checkingLocations
+   * Helper method to figure out if a monster dwells next to a cell.
+   * @param cell int id of the cell to be checked
+   * @return true if a living monster dwells in a cave adjacent to the cell
    */
-  private boolean checkMonster(List<Location> monsterLocations, List<Location> checkingLocations) {
-    for (Location l : checkingLocations) {
-      if (l.hasMonster()) {
+  private boolean hasAdjacentMonster(int cell) {
+    for (Direction dir : Direction.values()) {
+      int cave = this.caveGraph.getJumpTarget(cell, dir);
+      if (cave != -1 && this.caveGraph.getJumpSteps(cell, dir) == 1 
+          && this.getLocation(cave).hasMonster()) {
         return true;
       }
     }
     return false;
   }
   
+  /**
+   * Helper method to get the location of a cell of the connection grid.
+   * @param cell int id of the cell
+   * @return Location of the cell
+   */
+  private Location getLocation(int cell) {
+    return this.locations[cell / this.columns][cell % this.columns];
+  }
+  
 
 }
@@ -0,0 +1,64 @@
+package dungeon;
+
+/**
+ * Interface representing the connected components of a dungeon whose connections can
+ * change during the game. Cells are referenced by their dense numerical id
+ * (row * columns + column), and connections can be added or removed one at a time
+ * while the component of every cell stays available.
+ *
+ */
+public interface DynamicConnectivity {
+  
+  /**
+   * Connects two neighbour cells in both senses.
+   * @param a int id of the cell at one extreme.
+   * @param b int id of the cell at the other extreme.
+   * @return true if the cells were not connected before.
+   * @throws IllegalArgumentException when a or b are outside of the grid, or they are
+   *     not neighbours in the dungeon
+   */
+  public boolean addEdge(int a, int b) throws IllegalArgumentException;
+  
+  /**
+   * Disconnects two neighbour cells in both senses.
+   * @param a int id of the cell at one extreme.
+   * @param b int id of the cell at the other extreme.
+   * @return true if the cells were connected before.
+   * @throws IllegalArgumentException when a or b are outside of the grid, or they are
+   *     not neighbours in the dungeon
+   */
+  public boolean removeEdge(int a, int b) throws IllegalArgumentException;
+  
+  /**
+   * Checks if there is any path between two cells.
+   * @param a int id of the cell at one extreme.
+   * @param b int id of the cell at the other extreme.
+   * @return true if both cells are in the same component.
+   * @throws IllegalArgumentException when a or b are outside of the grid
+   */
+  public boolean connected(int a, int b) throws IllegalArgumentException;
+  
+  /**
+   * Returns the id of the component containing a cell. Ids are only stable until
+   * the next change of the connections.
+   * @param cell int id of the cell.
+   * @return int id of its component, between 0 and the number of cells.
+   * @throws IllegalArgumentException when cell is outside of the grid
+   */
+  public int getComponent(int cell) throws IllegalArgumentException;
+  
+  /**
+   * Returns the number of cells of the component containing a cell.
+   * @param cell int id of the cell.
+   * @return int with the size of its component.
+   * @throws IllegalArgumentException when cell is outside of the grid
+   */
+  public int getComponentSize(int cell) throws IllegalArgumentException;
+  
+  /**
+   * Returns the number of connected components.
+   * @return int with the number of components.
+   */
+  public int getComponentCount();
+
+}
@@ -0,0 +1,241 @@
+package dungeon;
+
+/**
+ * Implementation of the dynamic connectivity interface that labels every cell with
+ * its component, so queries take constant time. An added connection that joins two
+ * components relabels only the smaller one. A removed connection runs two searches
+ * in lockstep, one from each of its ends: if they meet the component is still whole,
+ * and otherwise the first search to run out of cells has found the part that split,
+ * which is the only one relabelled. Neither case needs a traversal of the whole
+ * dungeon. The structure owns the grid it was built from, so changes must go
+ * through it. Instances are not thread safe.
+ *
+ */
+public class DynamicConnectivityImpl implements DynamicConnectivity {
+  
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private final ConnectionGrid grid;
+  private final boolean wrapped;
+  private final int[] components;
+  private final int[] sizes;
+  private final int[] freeIds;
+  private int freeCount;
+  private int componentCount;
+  private final int[] firstQueue;
+  private final int[] secondQueue;
+  private final int[] stamps;
+  private int stamp;
+  
+  /**
+   * Constructor that labels the components of the current connections of a grid.
+   * @param grid connection grid that will be updated through this structure.
+   * @param wrapped boolean that indicates if connections can wrap around the edges.
+   * @throws IllegalArgumentException when grid is null
+   */
+  public DynamicConnectivityImpl(ConnectionGrid grid, boolean wrapped) 
+      throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    int cells = grid.getCellCount();
+    this.grid = grid;
+    this.wrapped = wrapped;
+    this.components = new int[cells];
+    this.sizes = new int[cells];
+    this.freeIds = new int[cells];
+    this.firstQueue = new int[cells];
+    this.secondQueue = new int[cells];
+    this.stamps = new int[cells];
+    this.stamp = 0;
+    
+    // Ids are handed out from a stack, and there are never more components than cells.
+    for (int i = 0; i < cells; i++) {
+      this.freeIds[i] = cells - 1 - i;
+      this.components[i] = -1;
+    }
+    this.freeCount = cells;
+    this.componentCount = 0;
+    for (int cell = 0; cell < cells; cell++) {
+      if (this.components[cell] == -1) {
+        this.label(cell, -1, this.newComponent());
+      }
+    }
+  }
+  
+  @Override
+  public boolean addEdge(int a, int b) throws IllegalArgumentException {
+    this.checkEdge(a, b);
+    int columns = this.grid.getColumns();
+    if (this.grid.isConnected(a / columns, a % columns, b / columns, b % columns)) {
+      return false;
+    }
+    this.grid.addConnection(a / columns, a % columns, b / columns, b % columns);
+    this.grid.addConnection(b / columns, b % columns, a / columns, a % columns);
+    
+    int small = this.components[a];
+    int large = this.components[b];
+    if (small != large) {
+      if (this.sizes[small] > this.sizes[large]) {
+        small = large;
+        large = this.components[a];
+      }
+      int start = (this.components[a] == small) ? a : b;
+      this.label(start, small, large);
+      this.sizes[small] = 0;
+      this.freeIds[this.freeCount++] = small;
+      this.componentCount--;
+    }
+    return true;
+  }
+  
+  @Override
+  public boolean removeEdge(int a, int b) throws IllegalArgumentException {
+    this.checkEdge(a, b);
+    int columns = this.grid.getColumns();
+    if (!this.grid.isConnected(a / columns, a % columns, b / columns, b % columns)) {
+      return false;
+    }
+    this.grid.removeConnection(a / columns, a % columns, b / columns, b % columns);
+    this.grid.removeConnection(b / columns, b % columns, a / columns, a % columns);
+    
+    // Each search marks its cells with its own stamp, so the other can detect a meeting.
+    this.stamp += 2;
+    int firstStamp = this.stamp - 1;
+    int secondStamp = this.stamp;
+    this.stamps[a] = firstStamp;
+    this.stamps[b] = secondStamp;
+    this.firstQueue[0] = a;
+    this.secondQueue[0] = b;
+    int firstHead = 0;
+    int firstTail = 1;
+    int secondHead = 0;
+    int secondTail = 1;
+    while (firstHead < firstTail && secondHead < secondTail) {
+      firstTail = this.expand(this.firstQueue[firstHead++], this.firstQueue, firstTail, 
+          firstStamp, secondStamp);
+      if (firstTail == -1) {
+        return true;
+      }
+      secondTail = this.expand(this.secondQueue[secondHead++], this.secondQueue, 
+          secondTail, secondStamp, firstStamp);
+      if (secondTail == -1) {
+        return true;
+      }
+    }
+    
+    // The search that ran out of cells holds the whole part that was split.
+    int[] queue = (firstHead == firstTail) ? this.firstQueue : this.secondQueue;
+    int count = (firstHead == firstTail) ? firstTail : secondTail;
+    int split = this.newComponent();
+    this.sizes[this.components[a]] -= count;
+    for (int i = 0; i < count; i++) {
+      this.components[queue[i]] = split;
+    }
+    this.sizes[split] = count;
+    return true;
+  }
+  
+  @Override
+  public boolean connected(int a, int b) throws IllegalArgumentException {
+    return this.getComponent(a) == this.getComponent(b);
+  }
+  
+  @Override
+  public int getComponent(int cell) throws IllegalArgumentException {
+    if (cell < 0 || cell >= this.components.length) {
+      throw new IllegalArgumentException("Cell is outside of the grid.");
+    }
+    return this.components[cell];
+  }
+  
+  @Override
+  public int getComponentSize(int cell) throws IllegalArgumentException {
+    return this.sizes[this.getComponent(cell)];
+  }
+  
+  @Override
+  public int getComponentCount() {
+    return this.componentCount;
+  }
+  
+  /**
+   * Helper that checks that two cells can be connected in this dungeon.
+   * @param a int id of the cell at one extreme.
+   * @param b int id of the cell at the other extreme.
+   * @throws IllegalArgumentException when a or b are outside of the grid, they are
+   *     not neighbours or the connection wraps around an unwrapped dungeon
+   */
+  private void checkEdge(int a, int b) throws IllegalArgumentException {
+    int cells = this.components.length;
+    if (a < 0 || a >= cells || b < 0 || b >= cells) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+    int columns = this.grid.getColumns();
+    int rowGap = Math.abs(a / columns - b / columns);
+    int columnGap = Math.abs(a % columns - b % columns);
+    boolean inside = rowGap + columnGap == 1;
+    boolean around = (rowGap == 0 && columnGap == columns - 1 && columns > 2) 
+        || (columnGap == 0 && rowGap == this.grid.getRows() - 1 && this.grid.getRows() > 2);
+    if (!inside && !(this.wrapped && around)) {
+      throw new IllegalArgumentException("Only neighbour cells can be connected.");
+    }
+  }
+  
+  /**
+   * Helper that takes an unused component id.
+   * @return int id of the new component.
+   */
+  private int newComponent() {
+    this.componentCount++;
+    return this.freeIds[--this.freeCount];
+  }
+  
+  /**
+   * Helper that relabels the cells reachable from a cell with a breadth first search.
+   * @param start int id of the cell where the search starts.
+   * @param from int id of the component being relabelled, or -1 for unlabelled cells.
+   * @param to int id of the new component.
+   */
+  private void label(int start, int from, int to) {
+    this.components[start] = to;
+    this.firstQueue[0] = start;
+    int head = 0;
+    int tail = 1;
+    while (head < tail) {
+      int cell = this.firstQueue[head++];
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = this.grid.getNeighbour(cell, dir);
+        if (neighbour != -1 && this.components[neighbour] == from) {
+          this.components[neighbour] = to;
+          this.firstQueue[tail++] = neighbour;
+        }
+      }
+    }
+    this.sizes[to] += tail;
+  }
+  
+  /**
+   * Helper that expands one cell of one of the searches of a removal.
+   * @param cell int id of the cell being expanded.
+   * @param queue queue of the search.
+   * @param tail int with the current end of the queue.
+   * @param own int stamp of this search.
+   * @param other int stamp of the other search.
+   * @return int with the new end of the queue, or -1 if both searches met.
+   */
+  private int expand(int cell, int[] queue, int tail, int own, int other) {
+    for (Direction dir : DIRECTIONS) {
+      int neighbour = this.grid.getNeighbour(cell, dir);
+      if (neighbour == -1 || this.stamps[neighbour] == own) {
+        continue;
+      }
+      if (this.stamps[neighbour] == other) {
+        return -1;
+      }
+      this.stamps[neighbour] = own;
+      queue[tail++] = neighbour;
+    }
+    return tail;
+  }
+
+}
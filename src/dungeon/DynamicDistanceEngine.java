@@ -0,0 +1,298 @@
+package dungeon;
+
+import java.util.Arrays;
+
+/**
+ * All pairs distance engine that stays up to date while connections are added or
+ * removed, so tunnels can open or collapse during the game without rebuilding the
+ * dungeon. After a change only the source rows whose distances really change are
+ * repaired, and inside each of them only the affected cells are searched again:
+ * an added connection spreads shorter distances with a breadth first search, and a
+ * removed one recomputes the cells that lost every shortest path to the source.
+ * The engine owns the grid it was built from, so changes must go through it.
+ * Instances are not thread safe.
+ *
+ */
+public class DynamicDistanceEngine implements DistanceEngine {
+  
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private final ConnectionGrid grid;
+  private final int[][] distances;
+  private final int[] queue;
+  private final int[] candidateStamps;
+  private final int[] affectedStamps;
+  private long[] heap;
+  private int heapSize;
+  private int stamp;
+  
+  /**
+   * Constructor that computes the distances between every pair of cells of the grid.
+   * @param grid connection grid that will be updated through this engine.
+   * @throws IllegalArgumentException when grid is null
+   */
+  public DynamicDistanceEngine(ConnectionGrid grid) throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    int cells = grid.getCellCount();
+    BreadthFirstSearch search = new BreadthFirstSearch(grid);
+    this.grid = grid;
+    this.distances = new int[cells][cells];
+    for (int source = 0; source < cells; source++) {
+      search.run(source, this.distances[source]);
+    }
+    this.queue = new int[cells];
+    this.candidateStamps = new int[cells];
+    this.affectedStamps = new int[cells];
+    this.heap = new long[64];
+    this.heapSize = 0;
+    this.stamp = 0;
+  }
+  
+  @Override
+  public int getDistance(int origin, int destination) throws IllegalArgumentException {
+    int cells = this.distances.length;
+    if (origin < 0 || origin >= cells || destination < 0 || destination >= cells) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+    return this.distances[origin][destination];
+  }
+  
+  /**
+   * Connects two neighbour cells in both senses and repairs the distances.
+   * @param a int id of one of the cells.
+   * @param b int id of the other cell.
+   * @return true if the cells were not connected before.
+   * @throws IllegalArgumentException when a cell is outside of the grid or they are
+   *     not neighbours
+   */
+  public boolean addEdge(int a, int b) throws IllegalArgumentException {
+    int columns = this.grid.getColumns();
+    this.checkCells(a, b);
+    if (this.grid.isConnected(a / columns, a % columns, b / columns, b % columns)) {
+      return false;
+    }
+    this.grid.addConnection(a / columns, a % columns, b / columns, b % columns);
+    this.grid.addConnection(b / columns, b % columns, a / columns, a % columns);
+    
+    // A row only changes when the new connection gives a shortcut to one of its ends.
+    for (int[] row : this.distances) {
+      if (row[a] != UNREACHABLE && row[a] + 1 < row[b]) {
+        this.spreadShortcut(row, b, row[a] + 1);
+      }
+      else if (row[b] != UNREACHABLE && row[b] + 1 < row[a]) {
+        this.spreadShortcut(row, a, row[b] + 1);
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Disconnects two neighbour cells in both senses and repairs the distances.
+   * @param a int id of one of the cells.
+   * @param b int id of the other cell.
+   * @return true if the cells were connected before.
+   * @throws IllegalArgumentException when a cell is outside of the grid or they are
+   *     not neighbours
+   */
+  public boolean removeEdge(int a, int b) throws IllegalArgumentException {
+    int columns = this.grid.getColumns();
+    this.checkCells(a, b);
+    if (!this.grid.isConnected(a / columns, a % columns, b / columns, b % columns)) {
+      return false;
+    }
+    this.grid.removeConnection(a / columns, a % columns, b / columns, b % columns);
+    this.grid.removeConnection(b / columns, b % columns, a / columns, a % columns);
+    
+    // A row only changes when the connection was the last step of every shortest
+    // path from the source to its farthest end.
+    for (int[] row : this.distances) {
+      if (row[a] == UNREACHABLE) {
+        continue;
+      }
+      this.stamp++;
+      if (row[a] + 1 == row[b] && !this.hasParent(row, b)) {
+        this.repairRemoval(row, b);
+      }
+      else if (row[b] + 1 == row[a] && !this.hasParent(row, a)) {
+        this.repairRemoval(row, a);
+      }
+    }
+    return true;
+  }
+  
+  /**
+   * Helper that checks that both cells belong to the grid.
+   * @param a int id of one of the cells.
+   * @param b int id of the other cell.
+   * @throws IllegalArgumentException when a cell is outside of the grid
+   */
+  private void checkCells(int a, int b) throws IllegalArgumentException {
+    int cells = this.distances.length;
+    if (a < 0 || a >= cells || b < 0 || b >= cells) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+  }
+  
+  /**
+   * Helper that lowers the distance of a cell and spreads it with a breadth first
+   * search, which stops at the cells whose distance does not improve.
+   * @param row distances from the source being repaired.
+   * @param cell int id of the cell reached through the shortcut.
+   * @param distance int with its new distance.
+   */
+  private void spreadShortcut(int[] row, int cell, int distance) {
+    row[cell] = distance;
+    this.queue[0] = cell;
+    int head = 0;
+    int tail = 1;
+    while (head < tail) {
+      int current = this.queue[head++];
+      int next = row[current] + 1;
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = this.grid.getNeighbour(current, dir);
+        if (neighbour != -1 && next < row[neighbour]) {
+          row[neighbour] = next;
+          this.queue[tail++] = neighbour;
+        }
+      }
+    }
+  }
+  
+  /**
+   * Helper that checks if a cell still has a neighbour one step closer to the source.
+   * @param row distances from the source.
+   * @param cell int id of the cell.
+   * @return true if the cell keeps a shortest path to the source.
+   */
+  private boolean hasParent(int[] row, int cell) {
+    for (Direction dir : DIRECTIONS) {
+      int neighbour = this.grid.getNeighbour(cell, dir);
+      if (neighbour != -1 && row[neighbour] + 1 == row[cell]
+          && this.affectedStamps[neighbour] != this.stamp) {
+        return true;
+      }
+    }
+    return false;
+  }
+  
+  /**
+   * Helper that repairs a row after a removal left a cell without shortest paths.
+   * First the cells that lost all their shortest paths are found level by level,
+   * then their distances are recomputed from the cells around them that kept theirs.
+   * @param row distances from the source being repaired.
+   * @param orphan int id of the cell that lost its last shortest path.
+   */
+  private void repairRemoval(int[] row, int orphan) {
+    this.candidateStamps[orphan] = this.stamp;
+    this.queue[0] = orphan;
+    int head = 0;
+    int tail = 1;
+    int affected = 0;
+    
+    // Candidates are visited in increasing distance, so every possible parent of a
+    // candidate is already classified when it is checked. Affected cells are moved
+    // to the front of the queue as they are found.
+    while (head < tail) {
+      int cell = this.queue[head++];
+      if (cell != orphan && this.hasParent(row, cell)) {
+        continue;
+      }
+      this.affectedStamps[cell] = this.stamp;
+      this.queue[affected++] = cell;
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = this.grid.getNeighbour(cell, dir);
+        if (neighbour != -1 && row[neighbour] == row[cell] + 1
+            && this.candidateStamps[neighbour] != this.stamp) {
+          this.candidateStamps[neighbour] = this.stamp;
+          this.queue[tail++] = neighbour;
+        }
+      }
+    }
+    
+    for (int i = 0; i < affected; i++) {
+      row[this.queue[i]] = UNREACHABLE;
+    }
+    this.heapSize = 0;
+    for (int i = 0; i < affected; i++) {
+      int cell = this.queue[i];
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = this.grid.getNeighbour(cell, dir);
+        if (neighbour != -1 && this.affectedStamps[neighbour] != this.stamp
+            && row[neighbour] != UNREACHABLE && row[neighbour] + 1 < row[cell]) {
+          row[cell] = row[neighbour] + 1;
+        }
+      }
+      if (row[cell] != UNREACHABLE) {
+        this.push(row[cell], cell);
+      }
+    }
+    while (this.heapSize > 0) {
+      long entry = this.pop();
+      int cell = (int) entry;
+      if ((int) (entry >>> 32) != row[cell]) {
+        // Stale heap entry of a cell already reached with a lower distance.
+        continue;
+      }
+      int next = row[cell] + 1;
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = this.grid.getNeighbour(cell, dir);
+        if (neighbour != -1 && this.affectedStamps[neighbour] == this.stamp
+            && next < row[neighbour]) {
+          row[neighbour] = next;
+          this.push(next, neighbour);
+        }
+      }
+    }
+  }
+  
+  /**
+   * Helper that adds a cell to the repair heap, ordered by its distance.
+   * @param priority int with the distance of the cell.
+   * @param cell int id of the cell.
+   */
+  private void push(int priority, int cell) {
+    if (this.heapSize == this.heap.length) {
+      this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+    }
+    long entry = ((long) priority << 32) | cell;
+    int i = this.heapSize++;
+    while (i > 0) {
+      int up = (i - 1) >>> 1;
+      if (this.heap[up] <= entry) {
+        break;
+      }
+      this.heap[i] = this.heap[up];
+      i = up;
+    }
+    this.heap[i] = entry;
+  }
+  
+  /**
+   * Helper that removes the entry with the lowest distance.
+   * @return long with the removed entry, distance in the high 32 bits and cell id in
+   *     the low ones.
+   */
+  private long pop() {
+    long top = this.heap[0];
+    long last = this.heap[--this.heapSize];
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= this.heapSize) {
+        break;
+      }
+      if (child + 1 < this.heapSize && this.heap[child + 1] < this.heap[child]) {
+        child++;
+      }
+      if (last <= this.heap[child]) {
+        break;
+      }
+      this.heap[i] = this.heap[child];
+      i = child;
+    }
+    this.heap[i] = last;
+    return top;
+  }
+
+}
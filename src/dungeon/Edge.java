@@ -21,18 +21,18 @@ public interface Edge {
   public Location getDestination();
   
   /**
-   * Returns the hashcode string of both
+   * Returns the coordinates of both
    * locations in one of the valid directions
    * of the edge.
-   * @return String with concat of hashes.
+   * @return String with concat of coordinates.
    */
   public String getDir1();
   
   /**
-   * Returns the hashcode string of both
+   * Returns the coordinates of both
    * locations in the other valid directions
    * of the edge.
-   * @return String with concat of hashes.
+   * @return String with concat of coordinates.
    */
   public String getDir2();
 
@@ -35,16 +35,18 @@ public class EdgeImpl implements Edge {
   @Override
   public String getDir1() {
     StringBuilder builder = new StringBuilder();
-    builder.append(String.valueOf(this.origin.hashCode()));
-    builder.append(String.valueOf(this.destination.hashCode()));
+    builder.append(this.origin.getRow()).append(',').append(this.origin.getColumn());
+    builder.append('-');
+    builder.append(this.destination.getRow()).append(',').append(this.destination.getColumn());
     return builder.toString();
   }
   
   @Override
   public String getDir2() {
     StringBuilder builder = new StringBuilder();
-    builder.append(String.valueOf(this.destination.hashCode()));
-    builder.append(String.valueOf(this.origin.hashCode()));
+    builder.append(this.destination.getRow()).append(',').append(this.destination.getColumn());
+    builder.append('-');
+    builder.append(this.origin.getRow()).append(',').append(this.origin.getColumn());
     return builder.toString();
   }
   
@@ -0,0 +1,84 @@
+package dungeon;
+
+import java.util.AbstractList;
+
+/**
+ * Read only list of edges of the dungeon stored as packed primitive keys. Every edge
+ * is a single long with the id of its lower cell (row * columns + column) in the high
+ * 32 bits and the id of the other cell in the low ones, so each undirected edge has
+ * exactly one key and no object is kept per edge. Edge objects are only created when
+ * an element is read, for the code that works with the Edge interface.
+ *
+ */
+public class EdgeList extends AbstractList<Edge> {
+  
+  private final long[] keys;
+  private final Location[][] locations;
+  
+  /**
+   * Constructor of the list. The array of keys is not copied, so it must not be
+   * modified afterwards.
+   * @param keys array with the packed keys of the edges.
+   * @param locations grid of locations of the dungeon, used to build the edge objects.
+   * @throws IllegalArgumentException when keys or locations are null
+   */
+  public EdgeList(long[] keys, Location[][] locations) throws IllegalArgumentException {
+    if (keys == null || locations == null) {
+      throw new IllegalArgumentException("Keys and locations cannot be null.");
+    }
+    this.keys = keys;
+    this.locations = locations;
+  }
+  
+  /**
+   * Packs the edge between two cells in its key.
+   * @param a int id of the cell at one extreme.
+   * @param b int id of the cell at the other extreme.
+   * @return long with the key of the edge, the same for both orders of the cells.
+   */
+  public static long key(int a, int b) {
+    return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+  }
+  
+  /**
+   * Getter of the packed key of an edge.
+   * @param index int position of the edge.
+   * @return long with its key.
+   */
+  public long getKey(int index) {
+    return this.keys[index];
+  }
+  
+  /**
+   * Getter of the lower cell of an edge.
+   * @param index int position of the edge.
+   * @return int id of the cell.
+   */
+  public int getCellA(int index) {
+    return (int) (this.keys[index] >>> 32);
+  }
+  
+  /**
+   * Getter of the higher cell of an edge.
+   * @param index int position of the edge.
+   * @return int id of the cell.
+   */
+  public int getCellB(int index) {
+    return (int) this.keys[index];
+  }
+  
+  @Override
+  public Edge get(int index) {
+    int columns = this.locations[0].length;
+    int a = this.getCellA(index);
+    int b = this.getCellB(index);
+    return new EdgeImpl(this.locations[a / columns][a % columns], 
+        this.locations[b / columns][b % columns]);
+  }
+  
+  @Override
+  public int size() {
+    return this.keys.length;
+  }
+
+}
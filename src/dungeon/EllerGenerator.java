@@ -0,0 +1,168 @@
+package dungeon;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Maze generator based on Eller's algorithm, which builds the maze one row at a time
+ * and only remembers which cells of the current row are already connected between
+ * them. Rows are handed to a sink as soon as they are finished, so the memory used is
+ * proportional to the number of columns no matter how many rows the dungeon has.
+ * Cells of a row are joined at random when they are not connected yet, every set of
+ * connected cells goes down at least once, and the last row joins every set left, so
+ * the result is a single spanning tree. Rows never wrap, as the first row is gone by
+ * the time the last one is built, while columns wrap when the dungeon is wrapped.
+ *
+ */
+public class EllerGenerator implements MazeGenerator {
+  
+  private static final int NORTH = 1 << Direction.NORTH.ordinal();
+  private static final int SOUTH = 1 << Direction.SOUTH.ordinal();
+  private static final int EAST = 1 << Direction.EAST.ordinal();
+  private static final int WEST = 1 << Direction.WEST.ordinal();
+  
+  @Override
+  public ConnectionGrid generate(int rows, int columns, boolean wrapped, long seed)
+      throws IllegalArgumentException {
+    if (rows < 1 || columns < 1) {
+      throw new IllegalArgumentException("Columns or rows must be positive.");
+    }
+    ConnectionGrid grid = new ConnectionGridImpl(rows, columns);
+    this.generate(rows, columns, wrapped, seed, (row, masks) -> {
+      for (int col = 0; col < columns; col++) {
+        if ((masks[col] & SOUTH) != 0) {
+          grid.addConnection(row, col, row + 1, col);
+          grid.addConnection(row + 1, col, row, col);
+        }
+        if ((masks[col] & EAST) != 0) {
+          grid.addConnection(row, col, row, (col + 1) % columns);
+          grid.addConnection(row, (col + 1) % columns, row, col);
+        }
+      }
+    });
+    return grid;
+  }
+  
+  /**
+   * Generates a maze streaming its rows to a sink.
+   * @param rows number of rows of the dungeon.
+   * @param columns number of columns of the dungeon.
+   * @param wrapped boolean that indicates if connections can wrap around the sides.
+   * @param seed long that initializes the pseudorandom series of the generator.
+   * @param sink destination of the rows.
+   * @throws IllegalArgumentException when rows or columns are not positive or sink is null
+   */
+  public void generate(int rows, int columns, boolean wrapped, long seed, RowSink sink)
+      throws IllegalArgumentException {
+    if (rows < 1 || columns < 1) {
+      throw new IllegalArgumentException("Columns or rows must be positive.");
+    }
+    if (sink == null) {
+      throw new IllegalArgumentException("Sink cannot be null.");
+    }
+    Random random = new Random(seed);
+    boolean sidesWrap = wrapped && columns > 2;
+    
+    // Set ids are renumbered on every row, so they always stay below the columns.
+    int[] sets = new int[columns];
+    int[] nextSets = new int[columns];
+    int[] renumber = new int[columns];
+    int[] members = new int[columns];
+    int[] firsts = new int[columns];
+    int[] links = new int[columns];
+    int[] chosen = new int[columns];
+    boolean[] goesDown = new boolean[columns];
+    byte[] masks = new byte[columns];
+    Arrays.fill(sets, -1);
+    
+    for (int row = 0; row < rows; row++) {
+      boolean lastRow = row == rows - 1;
+      Arrays.fill(renumber, -1);
+      int setCount = 0;
+      for (int col = 0; col < columns; col++) {
+        if (sets[col] == -1) {
+          sets[col] = setCount++;
+        }
+        else {
+          if (renumber[sets[col]] == -1) {
+            renumber[sets[col]] = setCount++;
+          }
+          sets[col] = renumber[sets[col]];
+        }
+      }
+      
+      // Every set keeps a linked list of its cells, so joining two sets only relabels
+      // the cells of the smaller one.
+      Arrays.fill(members, 0, setCount, 0);
+      Arrays.fill(firsts, 0, setCount, -1);
+      for (int col = columns - 1; col >= 0; col--) {
+        int set = sets[col];
+        links[col] = firsts[set];
+        firsts[set] = col;
+        members[set]++;
+        masks[col] = ((masks[col] & SOUTH) != 0) ? (byte) NORTH : 0;
+      }
+      
+      // Neighbour cells of different sets are joined at random, or always in the last row.
+      for (int col = 0; col < columns; col++) {
+        int next = col + 1;
+        if (next == columns) {
+          if (!sidesWrap) {
+            break;
+          }
+          next = 0;
+        }
+        if (sets[col] != sets[next] && (lastRow || random.nextBoolean())) {
+          masks[col] |= EAST;
+          masks[next] |= WEST;
+          int kept = sets[col];
+          int absorbed = sets[next];
+          if (members[kept] < members[absorbed]) {
+            kept = absorbed;
+            absorbed = sets[col];
+          }
+          int last = -1;
+          for (int i = firsts[absorbed]; i != -1; i = links[i]) {
+            sets[i] = kept;
+            last = i;
+          }
+          links[last] = firsts[kept];
+          firsts[kept] = firsts[absorbed];
+          members[kept] += members[absorbed];
+        }
+      }
+      
+      if (!lastRow) {
+        // Every set goes down at least once: through the cells picked at random, or
+        // else through one of its cells chosen uniformly while scanning the row.
+        Arrays.fill(members, 0, setCount, 0);
+        Arrays.fill(goesDown, 0, setCount, false);
+        for (int col = 0; col < columns; col++) {
+          int set = sets[col];
+          members[set]++;
+          if (random.nextInt(members[set]) == 0) {
+            chosen[set] = col;
+          }
+          nextSets[col] = -1;
+          if (random.nextBoolean()) {
+            masks[col] |= SOUTH;
+            nextSets[col] = set;
+            goesDown[set] = true;
+          }
+        }
+        for (int col = 0; col < columns; col++) {
+          int set = sets[col];
+          if (!goesDown[set] && chosen[set] == col) {
+            masks[col] |= SOUTH;
+            nextSets[col] = set;
+          }
+        }
+      }
+      sink.acceptRow(row, masks);
+      int[] aux = sets;
+      sets = nextSets;
+      nextSets = aux;
+    }
+  }
+
+}
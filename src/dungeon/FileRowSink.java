@@ -0,0 +1,73 @@
+package dungeon;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Row sink that writes the rows of a maze to a file as they are generated, one byte
+ * with the connection mask of every cell, row after row. The rows are not kept in
+ * memory, so the size of the maze is only limited by the disk.
+ *
+ */
+public class FileRowSink implements RowSink, Closeable {
+  
+  private final OutputStream output;
+  private long rowCount;
+  
+  /**
+   * Constructor that creates the file, or truncates it if it already exists.
+   * @param file path of the file where the rows are written.
+   * @throws IllegalArgumentException when file is null
+   * @throws IllegalStateException when the file cannot be opened
+   */
+  public FileRowSink(Path file) throws IllegalArgumentException, IllegalStateException {
+    if (file == null) {
+      throw new IllegalArgumentException("File cannot be null.");
+    }
+    try {
+      this.output = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+    }
+    catch (IOException ioe) {
+      throw new IllegalStateException("Maze file could not be opened.", ioe);
+    }
+    this.rowCount = 0;
+  }
+  
+  @Override
+  public void acceptRow(int row, byte[] masks) throws IllegalStateException {
+    try {
+      this.output.write(masks);
+      this.rowCount++;
+    }
+    catch (IOException ioe) {
+      throw new IllegalStateException("Maze row could not be written.", ioe);
+    }
+  }
+  
+  /**
+   * Getter of the number of rows written so far.
+   * @return long with the number of rows.
+   */
+  public long getRowCount() {
+    return this.rowCount;
+  }
+  
+  /**
+   * Flushes the pending rows and closes the file.
+   * @throws IllegalStateException when the file cannot be written
+   */
+  @Override
+  public void close() throws IllegalStateException {
+    try {
+      this.output.close();
+    }
+    catch (IOException ioe) {
+      throw new IllegalStateException("Maze file could not be closed.", ioe);
+    }
+  }
+
+}
@@ -0,0 +1,104 @@
+package dungeon;
+
+import java.util.Arrays;
+
+/**
+ * Floyd-Warshall implementation of the distance engine. It examines all possible
+ * node trios, so it runs in O(V^3) and is kept as the reference all pairs algorithm
+ * the faster engines are checked against.
+ *
+ */
+public class FloydWarshallDistanceEngine implements DistanceEngine {
+  
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private final int rows;
+  private final int columns;
+  private final int[][][][] distances;
+  
+  /**
+   * Constructor that computes the distances between every pair of cells of the grid.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @throws IllegalArgumentException when grid is null
+   */
+  public FloydWarshallDistanceEngine(ConnectionGrid grid) throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    this.rows = grid.getRows();
+    this.columns = grid.getColumns();
+    this.distances = this.calculateShortestDistances(grid);
+  }
+  
+  /**
+   * Floyd-Warshall algorithm implementation to obtain shortest path between all nodes of a graph.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @return a 4 dimension matrix indicating the distance (number of steps) between each pair
+   *     of nodes referenced by their phisical position indexes.
+   */
+  private int[][][][] calculateShortestDistances(ConnectionGrid grid) {
+    int[][][][] dist = new int[this.rows][this.columns][this.rows][this.columns];
+    
+    for (int i = 0; i < this.rows; i++) {
+      for (int j = 0; j < this.columns; j++) {
+        for (int k = 0; k < this.rows; k++) {
+          Arrays.fill(dist[i][j][k], UNREACHABLE);
+        }
+      }
+    }
+    
+    // We iterate over the connections and include them in the distance matrix. 
+    // Connections of the final grid are non-directed.
+    for (int cell = 0; cell < grid.getCellCount(); cell++) {
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = grid.getNeighbour(cell, dir);
+        if (neighbour != -1) {
+          dist[cell / this.columns][cell % this.columns]
+              [neighbour / this.columns][neighbour % this.columns] = 1;
+        }
+      }
+    }
+    
+    // We also set the diagonal of the matrix to be zero.
+    for (int i = 0; i < this.rows; i++) {
+      for (int j = 0; j < this.columns; j++) {
+        dist[i][j][i][j] = 0;
+      }
+    }
+    
+    // Now the main part of the loop, where we have to examine all possible nodes trios.
+    // The intermediate node (m, n) has to be the outermost loop, so every path through
+    // the intermediates already examined is known when a new one is considered.
+    for (int m = 0; m < this.rows; m++) {
+      for (int n = 0; n < this.columns; n++) {
+        for (int i = 0; i < this.rows; i++) {
+          for (int j = 0; j < this.columns; j++) {
+            for (int k = 0; k < this.rows; k++) {
+              for (int l = 0; l < this.columns; l++) {
+                int distOld = dist[i][j][k][l];
+                int distNew = dist[i][j][m][n] + dist[m][n][k][l];
+                if (distOld > distNew) {
+                  dist[i][j][k][l] = distNew;
+                }
+              }
+            }
+          }
+        }
+      }
+    }
+    
+    return dist;
+  }
+  
+  @Override
+  public int getDistance(int origin, int destination) throws IllegalArgumentException {
+    int cells = this.rows * this.columns;
+    if (origin < 0 || origin >= cells || destination < 0 || destination >= cells) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+    return Math.min(this.distances[origin / this.columns][origin % this.columns]
+        [destination / this.columns][destination % this.columns],
+        this.distances[destination / this.columns][destination % this.columns]
+            [origin / this.columns][origin % this.columns]);
+  }
+
+}
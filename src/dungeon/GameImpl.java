@@ -238,7 +238,7 @@ public class GameImpl implements Game {
       p.useArrow();
     }
     
-    Location shotDestination = this.getArrowDestination(p.getLastTurn()
+    Location shotDestination = this.dungeon.getArrowDestination(p.getLastTurn()
         .getLocation(), dir, distance);
     
     
@@ -254,48 +254,6 @@ public class GameImpl implements Game {
   }
   
   
-  /**
-   * Helper method to get the destination cave of an attack shot.
-   * @param shotStart location where the shoot starts
-   * @param dir Direction of the shoot
-   * @param distance number of caves distance
-   * @return final Location the arrow reaches
-   */
-  private Location getArrowDestination(Location shotStart, Direction dir, int distance) {
-    int passedCaves = 0;
-    Direction currentEntryPoint = null;
-    Location currentLocation = shotStart;
-    if (dir.equals(Direction.NORTH)) {
-      currentEntryPoint = Direction.SOUTH;
-    }
-    if (dir.equals(Direction.SOUTH)) {
-      currentEntryPoint = Direction.NORTH;
-    }
-    if (dir.equals(Direction.EAST)) {
-      currentEntryPoint = Direction.WEST;
-    }
-    if (dir.equals(Direction.WEST)) {
-      currentEntryPoint = Direction.EAST;
-    }
-    while (passedCaves < distance) {
-      // We check if we have hit a wall
-      if (currentEntryPoint == null) {
-        return currentLocation;
-      }
-      else {
-        int[] nextLocationIndexes = currentLocation.getOpossiteLocation(currentEntryPoint);
-        int row = nextLocationIndexes[0];
-        int column = nextLocationIndexes[1];
-        currentEntryPoint = currentLocation.getNextEntryPoint(currentEntryPoint);
-        currentLocation = this.dungeon.getLocations()[row][column];
-        if (currentLocation.getType().equals(LocationType.CAVE)) {
-          passedCaves ++;
-        }
-      }
-    }
-    return currentLocation;
-  }
-  
   /**
    * Helper to check if a monster is in player's current location and
    * resolve if the player is eaten by it.
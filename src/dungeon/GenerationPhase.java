@@ -0,0 +1,35 @@
+package dungeon;
+
+/**
+ * Enum with the phases of the generation of a dungeon that draw pseudorandom numbers.
+ * Every phase gets its own stream, so changing how many numbers one phase draws does
+ * not change the result of the others.
+ *
+ */
+public enum GenerationPhase {
+  
+  /**
+   * Generation of the spanning tree of the maze.
+   */
+  MAZE,
+  
+  /**
+   * Selection of the extra connections of the interconnectivity.
+   */
+  INTERCONNECTIVITY,
+  
+  /**
+   * Placement of the treasures and arrows.
+   */
+  ITEMS,
+  
+  /**
+   * Selection of the start and finish locations.
+   */
+  START_FINISH,
+  
+  /**
+   * Placement of the monsters.
+   */
+  MONSTERS
+}
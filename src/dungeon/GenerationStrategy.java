@@ -0,0 +1,78 @@
+package dungeon;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Enum with the default strategies available to generate the maze of a dungeon.
+ * Each strategy builds a spanning tree over the locations, and they differ in
+ * speed and in the shape of the mazes they produce.
+ *
+ */
+public enum GenerationStrategy implements MazeGenerator {
+  
+  /**
+   * Random potential connections followed by Kruskal's algorithm, the original
+   * generation of the dungeon.
+   */
+  KRUSKAL {
+    @Override
+    public ConnectionGrid generate(int rows, int columns, boolean wrapped, long seed) {
+      return new KruskalGenerator().generate(rows, columns, wrapped, seed);
+    }
+  },
+  
+  /**
+   * Wilson's algorithm, that gives every possible maze the same probability.
+   */
+  WILSON {
+    @Override
+    public ConnectionGrid generate(int rows, int columns, boolean wrapped, long seed) {
+      return new WilsonGenerator().generate(rows, columns, wrapped, seed);
+    }
+  },
+  
+  /**
+   * Randomized Prim's algorithm, growing the maze from a single location.
+   */
+  PRIM {
+    @Override
+    public ConnectionGrid generate(int rows, int columns, boolean wrapped, long seed) {
+      return new PrimGenerator().generate(rows, columns, wrapped, seed);
+    }
+  },
+  
+  /**
+   * Depth first search with backtracking, that carves long corridors.
+   */
+  BACKTRACKER {
+    @Override
+    public ConnectionGrid generate(int rows, int columns, boolean wrapped, long seed) {
+      return new BacktrackerGenerator().generate(rows, columns, wrapped, seed);
+    }
+  },
+  
+  /**
+   * Kruskal's algorithm run over horizontal stripes on all the available cores. The
+   * number of stripes is fixed, so the maze of a seed does not depend on the machine.
+   */
+  PARALLEL {
+    @Override
+    public ConnectionGrid generate(int rows, int columns, boolean wrapped, long seed) {
+      return new ParallelSpanningTreeGenerator(ForkJoinPool.commonPool(), PARALLEL_STRIPES)
+          .generate(rows, columns, wrapped, seed);
+    }
+  },
+  
+  /**
+   * Eller's algorithm, that builds the maze one row at a time. Rows do not wrap.
+   */
+  ELLER {
+    @Override
+    public ConnectionGrid generate(int rows, int columns, boolean wrapped, long seed) {
+      return new EllerGenerator().generate(rows, columns, wrapped, seed);
+    }
+  };
+  
+  private static final int PARALLEL_STRIPES = 16;
+
+}
@@ -0,0 +1,120 @@
+package dungeon;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Command line benchmark of the maze generation strategies. For several dungeon sizes
+ * it times every strategy and measures the memory it allocates, together with the
+ * shape of the mazes it produces: the share of dead ends, the average length of the
+ * shortest paths between locations and the ratio between caves and tunnels.
+ * Arguments are the dungeon sides to be measured, 50 100 200 400 by default.
+ *
+ */
+public class GeneratorBenchmark {
+  
+  private static final int REPETITIONS = 5;
+  private static final int PATH_SOURCES = 16;
+  
+  /**
+   * Entry point of the benchmark.
+   * @param args optional list of dungeon sides.
+   */
+  public static void main(String[] args) {
+    int[] sides = {50, 100, 200, 400};
+    if (args.length > 0) {
+      sides = new int[args.length];
+      for (int i = 0; i < args.length; i++) {
+        sides[i] = Integer.parseInt(args[i]);
+      }
+    }
+    
+    System.out.println(String.format(Locale.ROOT, "%12s %6s %10s %12s %10s %10s %12s",
+        "strategy", "side", "time(ms)", "alloc(KiB)", "deadEnds%", "avgPath", "caves/tun"));
+    for (int side : sides) {
+      for (GenerationStrategy strategy : GenerationStrategy.values()) {
+        double time = time(strategy, side);
+        long allocated = allocation(strategy, side);
+        ConnectionGrid grid = strategy.generate(side, side, true, side);
+        int cells = grid.getCellCount();
+        int deadEnds = 0;
+        int tunnels = 0;
+        for (int cell = 0; cell < cells; cell++) {
+          deadEnds += (grid.getDegree(cell) == 1) ? 1 : 0;
+          tunnels += (grid.getDegree(cell) == 2) ? 1 : 0;
+        }
+        
+        System.out.println(String.format(Locale.ROOT, "%12s %6d %10.2f %12s %10.2f %10.2f %12.3f",
+            strategy, side, time, (allocated < 0) ? "n/a" : String.valueOf(allocated / 1024),
+            100.0 * deadEnds / cells, averagePath(grid),
+            (cells - tunnels) / (double) Math.max(1, tunnels)));
+      }
+    }
+  }
+  
+  /**
+   * Helper that returns the median time of generating a maze, after one warm up run.
+   * @param strategy generation strategy to be timed.
+   * @param side int with the number of rows and columns of the dungeon.
+   * @return double with the median milliseconds of the repetitions.
+   */
+  private static double time(MazeGenerator strategy, int side) {
+    strategy.generate(side, side, true, 0);
+    long[] times = new long[REPETITIONS];
+    for (int i = 0; i < REPETITIONS; i++) {
+      long start = System.nanoTime();
+      strategy.generate(side, side, true, i);
+      times[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(times);
+    return times[REPETITIONS / 2] / 1e6;
+  }
+  
+  /**
+   * Helper that measures the bytes allocated by the calling thread while generating
+   * a maze. Memory allocated by other threads, like the workers of the parallel
+   * strategy, is not counted.
+   * @param strategy generation strategy to be measured.
+   * @param side int with the number of rows and columns of the dungeon.
+   * @return long with the allocated bytes, or -1 if the virtual machine cannot
+   *     measure them.
+   */
+  private static long allocation(MazeGenerator strategy, int side) {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+      return -1;
+    }
+    com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+    long thread = Thread.currentThread().getId();
+    long before = counter.getThreadAllocatedBytes(thread);
+    strategy.generate(side, side, true, side);
+    return counter.getThreadAllocatedBytes(thread) - before;
+  }
+  
+  /**
+   * Helper that estimates the average length of the shortest paths of a maze, from
+   * a few sources spread evenly over the grid to every location they reach.
+   * @param grid connection grid of the maze.
+   * @return double with the average number of steps.
+   */
+  private static double averagePath(ConnectionGrid grid) {
+    int cells = grid.getCellCount();
+    BreadthFirstSearch search = new BreadthFirstSearch(grid);
+    int[] distances = new int[cells];
+    long total = 0;
+    long paths = 0;
+    for (int i = 0; i < PATH_SOURCES; i++) {
+      search.run((int) ((long) i * cells / PATH_SOURCES), distances);
+      for (int distance : distances) {
+        if (distance != DistanceEngine.UNREACHABLE) {
+          total += distance;
+          paths++;
+        }
+      }
+    }
+    return total / (double) Math.max(1, paths);
+  }
+
+}
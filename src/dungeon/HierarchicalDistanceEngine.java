@@ -0,0 +1,393 @@
+package dungeon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Hierarchical distance engine (HPA*) for very large dungeons. The grid is split in
+ * square chunks and every cell with a connection towards another chunk becomes an
+ * entrance. For each chunk the distances between its entrances, moving only inside the
+ * chunk, are precomputed. A query only searches inside the chunks of its two extremes,
+ * and then runs Dijkstra over the small abstract graph of entrances, where moving
+ * inside a chunk costs the precomputed distance and crossing to another chunk costs one.
+ * A change of connections inside a chunk only requires rebuilding that chunk.
+ * Instances are not thread safe.
+ *
+ */
+public class HierarchicalDistanceEngine implements DistanceEngine {
+  
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private final ConnectionGrid grid;
+  private final int rows;
+  private final int columns;
+  private final int chunkSize;
+  private final int chunkColumns;
+  private final int[][] entrances;
+  private final int[][] entranceDistances;
+  private final int[] entranceIndex;
+  private final int[] localQueue;
+  private final int[] localDistances;
+  private final int[] localParents;
+  private final int[] costs;
+  private final int[] previous;
+  private final int[] stamps;
+  private long[] heap;
+  private int heapSize;
+  private int stamp;
+  private int bestEntrance;
+  
+  /**
+   * Constructor that splits the grid in chunks and precomputes all of them.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @param chunkSize int with the side of the square chunks.
+   * @throws IllegalArgumentException when grid is null or chunkSize is non positive
+   */
+  public HierarchicalDistanceEngine(ConnectionGrid grid, int chunkSize) 
+      throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size has to be positive.");
+    }
+    this.grid = grid;
+    this.rows = grid.getRows();
+    this.columns = grid.getColumns();
+    this.chunkSize = chunkSize;
+    this.chunkColumns = (this.columns + chunkSize - 1) / chunkSize;
+    int chunkRows = (this.rows + chunkSize - 1) / chunkSize;
+    int cells = grid.getCellCount();
+    this.entrances = new int[chunkRows * this.chunkColumns][];
+    this.entranceDistances = new int[this.entrances.length][];
+    this.entranceIndex = new int[cells];
+    Arrays.fill(this.entranceIndex, -1);
+    this.localQueue = new int[chunkSize * chunkSize];
+    this.localDistances = new int[chunkSize * chunkSize];
+    this.localParents = new int[chunkSize * chunkSize];
+    this.costs = new int[cells];
+    this.previous = new int[cells];
+    this.stamps = new int[cells];
+    this.heap = new long[64];
+    this.stamp = 0;
+    for (int chunk = 0; chunk < this.entrances.length; chunk++) {
+      this.rebuildChunk(chunk);
+    }
+  }
+  
+  /**
+   * Recomputes the entrances of a chunk and the distances between them. It has to be
+   * called after the connections inside the chunk change. When a connection between
+   * two chunks changes, both of them have to be rebuilt.
+   * @param chunk int id of the chunk, (row / chunkSize) * chunkColumns + column / chunkSize.
+   * @throws IllegalArgumentException when chunk does not exist
+   */
+  public void rebuildChunk(int chunk) throws IllegalArgumentException {
+    if (chunk < 0 || chunk >= this.entrances.length) {
+      throw new IllegalArgumentException("Chunk does not exist.");
+    }
+    if (this.entrances[chunk] != null) {
+      for (int cell : this.entrances[chunk]) {
+        this.entranceIndex[cell] = -1;
+      }
+    }
+    
+    // Entrances are the cells with a connection leaving the chunk.
+    List<Integer> found = new ArrayList<Integer>();
+    int firstRow = (chunk / this.chunkColumns) * this.chunkSize;
+    int firstColumn = (chunk % this.chunkColumns) * this.chunkSize;
+    int lastRow = Math.min(firstRow + this.chunkSize, this.rows);
+    int lastColumn = Math.min(firstColumn + this.chunkSize, this.columns);
+    for (int r = firstRow; r < lastRow; r++) {
+      for (int c = firstColumn; c < lastColumn; c++) {
+        int cell = r * this.columns + c;
+        for (Direction dir : DIRECTIONS) {
+          int neighbour = this.grid.getNeighbour(cell, dir);
+          if (neighbour != -1 && this.getChunk(neighbour) != chunk) {
+            found.add(cell);
+            break;
+          }
+        }
+      }
+    }
+    
+    int count = found.size();
+    int[] chunkEntrances = new int[count];
+    int[] distances = new int[count * count];
+    for (int i = 0; i < count; i++) {
+      chunkEntrances[i] = found.get(i);
+      this.entranceIndex[chunkEntrances[i]] = i;
+    }
+    for (int i = 0; i < count; i++) {
+      this.searchChunk(chunkEntrances[i]);
+      for (int j = 0; j < count; j++) {
+        distances[i * count + j] = this.localDistances[this.getLocalIndex(chunkEntrances[j])];
+      }
+    }
+    this.entrances[chunk] = chunkEntrances;
+    this.entranceDistances[chunk] = distances;
+  }
+  
+  /**
+   * Returns the id of the chunk containing a cell.
+   * @param cell int id of the cell.
+   * @return int id of its chunk.
+   */
+  public int getChunk(int cell) {
+    int r = cell / this.columns;
+    int c = cell % this.columns;
+    return (r / this.chunkSize) * this.chunkColumns + c / this.chunkSize;
+  }
+  
+  @Override
+  public int getDistance(int origin, int destination) throws IllegalArgumentException {
+    this.checkCells(origin, destination);
+    return this.searchAbstract(origin, destination);
+  }
+  
+  /**
+   * Returns the cells of a shortest path between two cells. The abstract path over the
+   * entrances is refined into cells chunk by chunk.
+   * @param origin int id of the cell where the path starts.
+   * @param destination int id of the cell where the path ends.
+   * @return array with the cell ids from origin to destination, both included, or an
+   *     empty array if there is no path.
+   * @throws IllegalArgumentException when origin or destination are outside of the grid
+   */
+  public int[] getPath(int origin, int destination) throws IllegalArgumentException {
+    this.checkCells(origin, destination);
+    if (this.searchAbstract(origin, destination) == UNREACHABLE) {
+      return new int[0];
+    }
+    List<Integer> path = new ArrayList<Integer>();
+    if (this.bestEntrance == -1) {
+      // The best path does not leave the chunk of both extremes.
+      this.appendLocalPath(path, origin, destination);
+    }
+    else {
+      List<Integer> hops = new ArrayList<Integer>();
+      for (int cell = this.bestEntrance; cell != -1; cell = this.previous[cell]) {
+        hops.add(cell);
+      }
+      Collections.reverse(hops);
+      this.appendLocalPath(path, origin, hops.get(0));
+      for (int i = 1; i < hops.size(); i++) {
+        int from = hops.get(i - 1);
+        int to = hops.get(i);
+        if (this.getChunk(from) == this.getChunk(to)) {
+          this.appendLocalPath(path, from, to);
+        }
+        else {
+          path.add(to);
+        }
+      }
+      this.appendLocalPath(path, hops.get(hops.size() - 1), destination);
+    }
+    int[] result = new int[path.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = path.get(i);
+    }
+    return result;
+  }
+  
+  /**
+   * Helper that runs Dijkstra over the abstract graph, leaving in bestEntrance the last
+   * entrance of the best path, or -1 if the best path stays inside a single chunk.
+   * @param origin int id of the cell where the search starts.
+   * @param destination int id of the cell the search is heading to.
+   * @return int with the distance between both cells, or UNREACHABLE.
+   */
+  private int searchAbstract(int origin, int destination) {
+    int originChunk = this.getChunk(origin);
+    int destinationChunk = this.getChunk(destination);
+    int best = UNREACHABLE;
+    this.bestEntrance = -1;
+    
+    // Costs to leave the destination chunk towards the destination, from each entrance.
+    this.searchChunk(destination);
+    int[] destinationEntrances = this.entrances[destinationChunk];
+    int[] exitCosts = new int[destinationEntrances.length];
+    for (int i = 0; i < exitCosts.length; i++) {
+      exitCosts[i] = this.localDistances[this.getLocalIndex(destinationEntrances[i])];
+    }
+    
+    // The origin is linked to the entrances of its chunk, and maybe directly
+    // to the destination if they share chunk.
+    this.searchChunk(origin);
+    if (originChunk == destinationChunk) {
+      best = this.localDistances[this.getLocalIndex(destination)];
+    }
+    this.stamp++;
+    this.heapSize = 0;
+    for (int cell : this.entrances[originChunk]) {
+      int cost = this.localDistances[this.getLocalIndex(cell)];
+      if (cost != UNREACHABLE) {
+        this.relax(cell, cost, -1);
+      }
+    }
+    
+    while (this.heapSize > 0) {
+      long entry = this.pop();
+      int cost = (int) (entry >>> 32);
+      int cell = (int) entry;
+      if (cost >= best) {
+        break;
+      }
+      if (cost > this.costs[cell]) {
+        continue;
+      }
+      int chunk = this.getChunk(cell);
+      int index = this.entranceIndex[cell];
+      if (chunk == destinationChunk && exitCosts[index] != UNREACHABLE 
+          && cost + exitCosts[index] < best) {
+        best = cost + exitCosts[index];
+        this.bestEntrance = cell;
+      }
+      int[] chunkEntrances = this.entrances[chunk];
+      int[] distances = this.entranceDistances[chunk];
+      for (int j = 0; j < chunkEntrances.length; j++) {
+        int distance = distances[index * chunkEntrances.length + j];
+        if (distance != UNREACHABLE && j != index) {
+          this.relax(chunkEntrances[j], cost + distance, cell);
+        }
+      }
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = this.grid.getNeighbour(cell, dir);
+        if (neighbour != -1 && this.getChunk(neighbour) != chunk) {
+          this.relax(neighbour, cost + 1, cell);
+        }
+      }
+    }
+    return best;
+  }
+  
+  /**
+   * Helper that lowers the cost of an entrance if the new cost improves it.
+   * @param cell int id of the entrance.
+   * @param cost int with the new cost.
+   * @param from int id of the entrance it is reached from, or -1 from the origin.
+   */
+  private void relax(int cell, int cost, int from) {
+    if (this.stamps[cell] == this.stamp && this.costs[cell] <= cost) {
+      return;
+    }
+    this.stamps[cell] = this.stamp;
+    this.costs[cell] = cost;
+    this.previous[cell] = from;
+    if (this.heapSize == this.heap.length) {
+      this.heap = Arrays.copyOf(this.heap, this.heap.length * 2);
+    }
+    long entry = ((long) cost << 32) | cell;
+    int i = this.heapSize++;
+    while (i > 0) {
+      int up = (i - 1) >>> 1;
+      if (this.heap[up] <= entry) {
+        break;
+      }
+      this.heap[i] = this.heap[up];
+      i = up;
+    }
+    this.heap[i] = entry;
+  }
+  
+  /**
+   * Helper that removes the heap entry with the lowest cost.
+   * @return long with the cost in the high 32 bits and the cell id in the low ones.
+   */
+  private long pop() {
+    long top = this.heap[0];
+    long last = this.heap[--this.heapSize];
+    int i = 0;
+    while (true) {
+      int child = 2 * i + 1;
+      if (child >= this.heapSize) {
+        break;
+      }
+      if (child + 1 < this.heapSize && this.heap[child + 1] < this.heap[child]) {
+        child++;
+      }
+      if (last <= this.heap[child]) {
+        break;
+      }
+      this.heap[i] = this.heap[child];
+      i = child;
+    }
+    this.heap[i] = last;
+    return top;
+  }
+  
+  /**
+   * Helper that runs a breadth first search from a cell without leaving its chunk,
+   * filling the local distances and parents.
+   * @param source int id of the source cell.
+   */
+  private void searchChunk(int source) {
+    int chunk = this.getChunk(source);
+    Arrays.fill(this.localDistances, UNREACHABLE);
+    int start = this.getLocalIndex(source);
+    this.localDistances[start] = 0;
+    this.localParents[start] = -1;
+    this.localQueue[0] = source;
+    int head = 0;
+    int tail = 1;
+    while (head < tail) {
+      int cell = this.localQueue[head++];
+      int next = this.localDistances[this.getLocalIndex(cell)] + 1;
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = this.grid.getNeighbour(cell, dir);
+        if (neighbour == -1 || this.getChunk(neighbour) != chunk) {
+          continue;
+        }
+        int local = this.getLocalIndex(neighbour);
+        if (this.localDistances[local] == UNREACHABLE) {
+          this.localDistances[local] = next;
+          this.localParents[local] = cell;
+          this.localQueue[tail++] = neighbour;
+        }
+      }
+    }
+  }
+  
+  /**
+   * Helper that appends the cells of the shortest path between two cells of the same
+   * chunk, staying inside it. The first cell is only added if the path is empty.
+   * @param path list where cells are appended.
+   * @param from int id of the cell where the segment starts.
+   * @param to int id of the cell where the segment ends.
+   */
+  private void appendLocalPath(List<Integer> path, int from, int to) {
+    this.searchChunk(from);
+    List<Integer> segment = new ArrayList<Integer>();
+    for (int cell = to; cell != -1; cell = this.localParents[this.getLocalIndex(cell)]) {
+      segment.add(cell);
+    }
+    Collections.reverse(segment);
+    path.addAll(path.isEmpty() ? segment : segment.subList(1, segment.size()));
+  }
+  
+  /**
+   * Helper that returns the position of a cell inside its chunk.
+   * @param cell int id of the cell.
+   * @return int index of the cell in the chunk buffers.
+   */
+  private int getLocalIndex(int cell) {
+    int r = cell / this.columns;
+    int c = cell % this.columns;
+    return (r % this.chunkSize) * this.chunkSize + c % this.chunkSize;
+  }
+  
+  /**
+   * Helper that validates the cells of a query.
+   * @param origin int id of the cell at one extreme.
+   * @param destination int id of the cell at the other extreme.
+   * @throws IllegalArgumentException when origin or destination are outside of the grid
+   */
+  private void checkCells(int origin, int destination) throws IllegalArgumentException {
+    int cells = this.costs.length;
+    if (origin < 0 || origin >= cells || destination < 0 || destination >= cells) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+  }
+
+}
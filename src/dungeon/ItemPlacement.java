@@ -0,0 +1,121 @@
+package dungeon;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Placement of the treasures and arrows of a dungeon in a single pass over its cells.
+ * Every cave holds a treasure, and every cell an arrow, with the same independent
+ * probability given by the percentage of the dungeon. Instead of rolling a die per
+ * cell, the gap until the next chosen cell is drawn from a geometric distribution,
+ * so the pseudorandom numbers used grow with the items placed and not with the size
+ * of the dungeon. Results are kept as arrays of dense cell ids
+ * (row * columns + column), in increasing order.
+ *
+ */
+public class ItemPlacement {
+  
+  private static final ItemType[] TREASURE_TYPES = {
+    ItemType.DIAMOND, ItemType.RUBY, ItemType.SAPPHIRE};
+  private final int[] treasureCells;
+  private final ItemType[] treasureTypes;
+  private final int[] arrowCells;
+  
+  /**
+   * Constructor that places the items over the final connections of a dungeon.
+   * @param grid connection grid of the dungeon, used to tell caves from tunnels.
+   * @param percentage 0 to 100 int number indicating the percentage of caves that
+   *     store treasures and the percentage of locations that store arrows.
+   * @param random pseudorandom series used for the sampling.
+   * @throws IllegalArgumentException when grid or random are null
+   */
+  public ItemPlacement(ConnectionGrid grid, int percentage, SplittableRandom random) 
+      throws IllegalArgumentException {
+    if (grid == null || random == null) {
+      throw new IllegalArgumentException("Grid and random cannot be null.");
+    }
+    // As in the original placement, a roll between 1 and 99 below the percentage
+    // places the item.
+    int rolls = Math.min(Math.max(percentage, 1), 100) - 1;
+    double logMiss = Math.log1p(-rolls / 99.0);
+    int cells = grid.getCellCount();
+    int[] treasures = new int[16];
+    ItemType[] types = new ItemType[16];
+    int[] arrows = new int[16];
+    int treasureCount = 0;
+    int arrowCount = 0;
+    
+    // Treasures are counted over the caves only and arrows over every cell.
+    int caveCount = 0;
+    long nextTreasure = skip(logMiss, random);
+    long nextArrow = skip(logMiss, random);
+    for (int cell = 0; cell < cells; cell++) {
+      if (cell == nextArrow) {
+        if (arrowCount == arrows.length) {
+          arrows = Arrays.copyOf(arrows, arrowCount * 2);
+        }
+        arrows[arrowCount++] = cell;
+        nextArrow = cell + 1 + skip(logMiss, random);
+      }
+      if (grid.getDegree(cell) != 2) {
+        if (caveCount == nextTreasure) {
+          if (treasureCount == treasures.length) {
+            treasures = Arrays.copyOf(treasures, treasureCount * 2);
+            types = Arrays.copyOf(types, treasureCount * 2);
+          }
+          // The roll that placed the treasure is uniform below the percentage, and
+          // its remainder by three gives the type.
+          treasures[treasureCount] = cell;
+          types[treasureCount++] = TREASURE_TYPES[(1 + random.nextInt(rolls)) % 3];
+          nextTreasure = caveCount + 1 + skip(logMiss, random);
+        }
+        caveCount++;
+      }
+    }
+    this.treasureCells = Arrays.copyOf(treasures, treasureCount);
+    this.treasureTypes = Arrays.copyOf(types, treasureCount);
+    this.arrowCells = Arrays.copyOf(arrows, arrowCount);
+  }
+  
+  /**
+   * Helper that draws the number of cells skipped before the next chosen one.
+   * @param logMiss double with the logarithm of the probability of not choosing a cell.
+   * @param random pseudorandom series used for the sampling.
+   * @return long with the number of cells skipped.
+   */
+  private static long skip(double logMiss, SplittableRandom random) {
+    if (logMiss == 0) {
+      return Integer.MAX_VALUE;
+    }
+    if (logMiss == Double.NEGATIVE_INFINITY) {
+      return 0;
+    }
+    double gap = Math.log(1.0 - random.nextDouble()) / logMiss;
+    return (long) Math.min(gap, Integer.MAX_VALUE);
+  }
+  
+  /**
+   * Getter of the cells that hold a treasure.
+   * @return array with the ids of the cells.
+   */
+  public int[] getTreasureCells() {
+    return this.treasureCells;
+  }
+  
+  /**
+   * Getter of the type of every treasure, in the same order as their cells.
+   * @return array with the types of the treasures.
+   */
+  public ItemType[] getTreasureTypes() {
+    return this.treasureTypes;
+  }
+  
+  /**
+   * Getter of the cells that hold an arrow.
+   * @return array with the ids of the cells.
+   */
+  public int[] getArrowCells() {
+    return this.arrowCells;
+  }
+
+}
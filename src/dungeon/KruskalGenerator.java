@@ -0,0 +1,71 @@
+package dungeon;
+
+import java.util.Random;
+
+/**
+ * Maze generator that first connects every cell with some of its neighbours at random
+ * and then runs Kruskal's algorithm over those potential connections, in row order,
+ * keeping only the ones that join cells not connected yet. This is the original
+ * generation of the dungeon. Each cell only proposes some of its connections, so when
+ * the potential connections do not reach every cell the rest of the neighbour pairs
+ * are added at the end to complete the tree.
+ *
+ */
+public class KruskalGenerator extends AbstractMazeGenerator {
+  
+  private static final Direction[] PROPOSALS = 
+      {Direction.SOUTH, Direction.NORTH, Direction.EAST, Direction.WEST};
+  
+  @Override
+  protected void carve(ConnectionGrid grid, boolean wrapped, Random random) {
+    int cells = grid.getCellCount();
+    int columns = grid.getColumns();
+    ConnectionGrid potential = new ConnectionGridImpl(grid.getRows(), columns);
+    
+    // Each direction is proposed with even odds, and every cell gets one more
+    // proposal picked at random so none is left isolated.
+    for (int cell = 0; cell < cells; cell++) {
+      boolean hasNeighbours = false;
+      for (Direction dir : PROPOSALS) {
+        int neighbour = getNeighbour(grid, wrapped, cell, dir);
+        if (neighbour != -1) {
+          hasNeighbours = true;
+          if (random.nextBoolean()) {
+            potential.addConnection(cell / columns, cell % columns, 
+                neighbour / columns, neighbour % columns);
+          }
+        }
+      }
+      while (hasNeighbours) {
+        int neighbour = getNeighbour(grid, wrapped, cell, PROPOSALS[random.nextInt(4)]);
+        if (neighbour != -1) {
+          potential.addConnection(cell / columns, cell % columns, 
+              neighbour / columns, neighbour % columns);
+          hasNeighbours = false;
+        }
+      }
+    }
+    
+    DisjointSet nodeSets = new DisjointSetImpl(cells);
+    for (int cell = 0; cell < cells; cell++) {
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = potential.getNeighbour(cell, dir);
+        if (neighbour != -1 && nodeSets.union(cell, neighbour)) {
+          connect(grid, cell, neighbour);
+        }
+      }
+    }
+    
+    // Cells the proposals left apart are joined through the rest of the neighbour
+    // pairs, in the same order, so the result is always a single tree.
+    for (int cell = 0; cell < cells && nodeSets.getSetCount() > 1; cell++) {
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = getNeighbour(grid, wrapped, cell, dir);
+        if (neighbour != -1 && nodeSets.union(cell, neighbour)) {
+          connect(grid, cell, neighbour);
+        }
+      }
+    }
+  }
+
+}
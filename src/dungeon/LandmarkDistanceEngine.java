@@ -0,0 +1,174 @@
+package dungeon;
+
+import java.util.Arrays;
+
+/**
+ * Distance engine for very large dungeons based on landmarks (the ALT technique).
+ * A breadth first search is precomputed from each of k landmark cells, chosen among
+ * some given cells (like start and finish) and then by farthest point sampling. By the
+ * triangle inequality, |d(L, a) - d(L, b)| &lt;= d(a, b) &lt;= d(a, L) + d(L, b) for every
+ * landmark L, which bounds any distance without searching. Exact queries run an A*
+ * search guided by the lower bound. Distances are kept in a single flat array of
+ * k * V ints.
+ *
+ */
+public class LandmarkDistanceEngine implements DistanceEngine, DistanceHeuristic {
+  
+  private final int cells;
+  private final int[] landmarks;
+  private final int[] distances;
+  private final AStarSearch search;
+  
+  /**
+   * Constructor that chooses the landmarks and precomputes their distances.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @param landmarkCount int with the number of landmarks to be used.
+   * @param seeds cell ids that have to be landmarks, before the sampled ones.
+   * @throws IllegalArgumentException when grid is null, landmarkCount is non positive,
+   *     there are more seeds than landmarks, a seed is outside of the grid, or the
+   *     table does not fit in a single array
+   */
+  public LandmarkDistanceEngine(ConnectionGrid grid, int landmarkCount, int... seeds) 
+      throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    if (landmarkCount < 1 || seeds.length > landmarkCount) {
+      throw new IllegalArgumentException("Landmarks have to be positive and hold the seeds.");
+    }
+    int count = Math.min(landmarkCount, grid.getCellCount());
+    if ((long) count * grid.getCellCount() > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many landmarks for the size of the grid.");
+    }
+    this.cells = grid.getCellCount();
+    this.landmarks = new int[count];
+    this.distances = new int[count * this.cells];
+    this.search = new AStarSearch(grid);
+    
+    BreadthFirstSearch bfs = new BreadthFirstSearch(grid);
+    int[] row = new int[this.cells];
+    int[] nearest = new int[this.cells];
+    Arrays.fill(nearest, Integer.MAX_VALUE);
+    for (int i = 0; i < count; i++) {
+      int landmark;
+      if (i < seeds.length) {
+        landmark = seeds[i];
+        if (landmark < 0 || landmark >= this.cells) {
+          throw new IllegalArgumentException("Seed landmarks have to be inside the grid.");
+        }
+      }
+      else {
+        landmark = farthest(nearest, i == 0);
+      }
+      this.landmarks[i] = landmark;
+      bfs.run(landmark, row);
+      System.arraycopy(row, 0, this.distances, i * this.cells, this.cells);
+      
+      // Unreachable cells stay the farthest ones, so other components get landmarks too.
+      for (int cell = 0; cell < this.cells; cell++) {
+        nearest[cell] = Math.min(nearest[cell], row[cell]);
+      }
+    }
+  }
+  
+  @Override
+  public int getDistance(int origin, int destination) throws IllegalArgumentException {
+    this.checkCells(origin, destination);
+    int lower = this.estimate(origin, destination);
+    if (lower == UNREACHABLE || lower == this.getUpperBound(origin, destination)) {
+      return lower;
+    }
+    return this.search.search(origin, destination, this);
+  }
+  
+  @Override
+  public int estimate(int cell, int target) {
+    int best = 0;
+    for (int i = 0; i < this.landmarks.length; i++) {
+      int fromCell = this.distances[i * this.cells + cell];
+      int fromTarget = this.distances[i * this.cells + target];
+      if ((fromCell == UNREACHABLE) != (fromTarget == UNREACHABLE)) {
+        // One of them shares the landmark's component and the other does not.
+        return UNREACHABLE;
+      }
+      if (fromCell != UNREACHABLE) {
+        best = Math.max(best, Math.abs(fromCell - fromTarget));
+      }
+    }
+    return best;
+  }
+  
+  /**
+   * Returns a lower bound of the distance between two cells without searching.
+   * @param origin int id of the cell at one extreme.
+   * @param destination int id of the cell at the other extreme.
+   * @return int with the lower bound, or UNREACHABLE if the cells are known to be
+   *     in different components.
+   * @throws IllegalArgumentException when origin or destination are outside of the grid
+   */
+  public int getLowerBound(int origin, int destination) throws IllegalArgumentException {
+    this.checkCells(origin, destination);
+    return this.estimate(origin, destination);
+  }
+  
+  /**
+   * Returns an upper bound of the distance between two cells without searching,
+   * the shortest route passing through a landmark.
+   * @param origin int id of the cell at one extreme.
+   * @param destination int id of the cell at the other extreme.
+   * @return int with the upper bound, or UNREACHABLE if no landmark reaches both.
+   * @throws IllegalArgumentException when origin or destination are outside of the grid
+   */
+  public int getUpperBound(int origin, int destination) throws IllegalArgumentException {
+    this.checkCells(origin, destination);
+    int best = UNREACHABLE;
+    for (int i = 0; i < this.landmarks.length; i++) {
+      int fromOrigin = this.distances[i * this.cells + origin];
+      int fromDestination = this.distances[i * this.cells + destination];
+      if (fromOrigin != UNREACHABLE && fromDestination != UNREACHABLE) {
+        best = Math.min(best, fromOrigin + fromDestination);
+      }
+    }
+    return best;
+  }
+  
+  /**
+   * Returns the cells used as landmarks.
+   * @return array with the cell ids of the landmarks.
+   */
+  public int[] getLandmarks() {
+    return this.landmarks.clone();
+  }
+  
+  /**
+   * Helper that picks the cell farthest from every landmark chosen so far.
+   * @param nearest distance of every cell to its nearest landmark.
+   * @param first true if no landmark has been chosen yet.
+   * @return int id of the chosen cell.
+   */
+  private static int farthest(int[] nearest, boolean first) {
+    if (first) {
+      return 0;
+    }
+    int best = 0;
+    for (int cell = 1; cell < nearest.length; cell++) {
+      if (nearest[cell] > nearest[best]) {
+        best = cell;
+      }
+    }
+    return best;
+  }
+  
+  /**
+   * Helper that validates the cells of a query.
+   * @param origin int id of the cell at one extreme.
+   * @param destination int id of the cell at the other extreme.
+   * @throws IllegalArgumentException when origin or destination are outside of the grid
+   */
+  private void checkCells(int origin, int destination) throws IllegalArgumentException {
+    if (origin < 0 || origin >= this.cells || destination < 0 || destination >= this.cells) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+  }
+
+}
@@ -0,0 +1,213 @@
+package dungeon;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Distance engine that does not precompute anything. Single pair queries are answered
+ * on demand with a bidirectional breadth first search, and cells that keep appearing in
+ * queries (like the finish cave) get their whole single source distance array cached.
+ * The cache is bounded and evicts the least recently used source, so memory stays
+ * capped regardless of the dungeon size.
+ * Instances are not thread safe.
+ *
+ */
+public class LazyDistanceEngine implements DistanceEngine {
+  
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private static final int HOT_QUERIES = 2;
+  private final ConnectionGrid grid;
+  private final int cacheSize;
+  private final BreadthFirstSearch search;
+  private final Map<Integer, int[]> cache;
+  private final Map<Integer, Integer> queryCounts;
+  private final int[] forwardQueue;
+  private final int[] backwardQueue;
+  private final int[] forwardDistances;
+  private final int[] backwardDistances;
+  private final int[] forwardStamps;
+  private final int[] backwardStamps;
+  private int stamp;
+  private int meeting;
+  
+  /**
+   * Constructor of the engine over a given grid.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @param cacheSize int with the maximum number of single source distance arrays kept.
+   * @throws IllegalArgumentException when grid is null or cacheSize is negative
+   */
+  public LazyDistanceEngine(ConnectionGrid grid, int cacheSize) 
+      throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    if (cacheSize < 0) {
+      throw new IllegalArgumentException("Cache size cannot be negative.");
+    }
+    int cells = grid.getCellCount();
+    this.grid = grid;
+    this.cacheSize = cacheSize;
+    this.search = new BreadthFirstSearch(grid);
+    this.cache = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+        return this.size() > cacheSize;
+      }
+    };
+    this.queryCounts = new LinkedHashMap<Integer, Integer>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+      
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+        return this.size() > 4 * cacheSize;
+      }
+    };
+    this.forwardQueue = new int[cells];
+    this.backwardQueue = new int[cells];
+    this.forwardDistances = new int[cells];
+    this.backwardDistances = new int[cells];
+    this.forwardStamps = new int[cells];
+    this.backwardStamps = new int[cells];
+    this.stamp = 0;
+  }
+  
+  @Override
+  public int getDistance(int origin, int destination) throws IllegalArgumentException {
+    int cells = this.grid.getCellCount();
+    if (origin < 0 || origin >= cells || destination < 0 || destination >= cells) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+    
+    int[] cached = this.cache.get(origin);
+    if (cached != null) {
+      return cached[destination];
+    }
+    cached = this.cache.get(destination);
+    if (cached != null) {
+      return cached[origin];
+    }
+    
+    // Cells queried repeatedly are promoted to a full single source array.
+    if (this.isHot(origin)) {
+      return this.getDistancesFrom(origin)[destination];
+    }
+    if (this.isHot(destination)) {
+      return this.getDistancesFrom(destination)[origin];
+    }
+    return this.searchBidirectional(origin, destination);
+  }
+  
+  /**
+   * Returns the distance of every cell to the source, computing and caching
+   * it if it is not cached yet.
+   * @param source int id of the source cell.
+   * @return array with the distance to the source of every cell. It must not be modified.
+   * @throws IllegalArgumentException when source is outside of the grid
+   */
+  public int[] getDistancesFrom(int source) throws IllegalArgumentException {
+    int[] distances = this.cache.get(source);
+    if (distances == null) {
+      distances = new int[this.grid.getCellCount()];
+      this.search.run(source, distances);
+      this.cache.put(source, distances);
+    }
+    return distances;
+  }
+  
+  /**
+   * Helper method that counts a query involving a cell.
+   * @param cell int id of the queried cell.
+   * @return true if the cell has been queried often enough to be cached.
+   */
+  private boolean isHot(int cell) {
+    Integer count = this.queryCounts.get(cell);
+    int newCount = (count == null) ? 1 : count + 1;
+    this.queryCounts.put(cell, newCount);
+    return newCount >= HOT_QUERIES && this.cacheSize > 0;
+  }
+  
+  /**
+   * Bidirectional breadth first search between two cells. Both frontiers grow one
+   * whole level at a time, always expanding the smaller one, and the search stops at
+   * the end of the first level where they meet.
+   * @param origin int id of the cell at one extreme.
+   * @param destination int id of the cell at the other extreme.
+   * @return int with the number of steps between both cells or UNREACHABLE.
+   */
+  private int searchBidirectional(int origin, int destination) {
+    if (origin == destination) {
+      return 0;
+    }
+    this.stamp++;
+    this.forwardStamps[origin] = this.stamp;
+    this.forwardDistances[origin] = 0;
+    this.backwardStamps[destination] = this.stamp;
+    this.backwardDistances[destination] = 0;
+    this.forwardQueue[0] = origin;
+    this.backwardQueue[0] = destination;
+    int forwardHead = 0;
+    int forwardTail = 1;
+    int backwardHead = 0;
+    int backwardTail = 1;
+    
+    while (forwardHead < forwardTail && backwardHead < backwardTail) {
+      this.meeting = UNREACHABLE;
+      if (forwardTail - forwardHead <= backwardTail - backwardHead) {
+        int levelEnd = forwardTail;
+        forwardTail = this.expandLevel(this.forwardQueue, forwardHead, forwardTail, 
+            this.forwardDistances, this.forwardStamps, 
+            this.backwardDistances, this.backwardStamps);
+        forwardHead = levelEnd;
+      }
+      else {
+        int levelEnd = backwardTail;
+        backwardTail = this.expandLevel(this.backwardQueue, backwardHead, backwardTail, 
+            this.backwardDistances, this.backwardStamps, 
+            this.forwardDistances, this.forwardStamps);
+        backwardHead = levelEnd;
+      }
+      if (this.meeting != UNREACHABLE) {
+        return this.meeting;
+      }
+    }
+    return UNREACHABLE;
+  }
+  
+  /**
+   * Helper that expands a whole level of one of the frontiers.
+   * @param queue queue of the side being expanded.
+   * @param head int with the first position of the level in the queue.
+   * @param tail int with the position after the last cell of the level.
+   * @param distances distances of the side being expanded.
+   * @param stamps visit marks of the side being expanded.
+   * @param otherDistances distances of the opposite side.
+   * @param otherStamps visit marks of the opposite side.
+   * @return int with the position after the last cell of the new level. The shortest
+   *     path found through this level, if any, is left in the meeting field.
+   */
+  private int expandLevel(int[] queue, int head, int tail, int[] distances, int[] stamps,
+      int[] otherDistances, int[] otherStamps) {
+    int newTail = tail;
+    for (int i = head; i < tail; i++) {
+      int cell = queue[i];
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = this.grid.getNeighbour(cell, dir);
+        if (neighbour == -1) {
+          continue;
+        }
+        if (otherStamps[neighbour] == this.stamp) {
+          this.meeting = Math.min(this.meeting, distances[cell] + 1 + otherDistances[neighbour]);
+        }
+        if (stamps[neighbour] != this.stamp) {
+          stamps[neighbour] = this.stamp;
+          distances[neighbour] = distances[cell] + 1;
+          queue[newTail++] = neighbour;
+        }
+      }
+    }
+    return newTail;
+  }
+
+}
@@ -0,0 +1,43 @@
+package dungeon;
+
+/**
+ * Manhattan distance between two cells of a grid. In wrapped dungeons the distance along
+ * each axis can also go around the edges, so the shortest of both ways is taken.
+ * It never exceeds the real distance, so it keeps A* searches exact.
+ *
+ */
+public class ManhattanHeuristic implements DistanceHeuristic {
+  
+  private final int rows;
+  private final int columns;
+  private final boolean wrapped;
+  
+  /**
+   * Constructor of the heuristic for a grid of a given size.
+   * @param rows number of rows of the grid.
+   * @param columns number of columns of the grid.
+   * @param wrapped boolean that indicates if the grid has wrapped connections.
+   * @throws IllegalArgumentException when rows or columns are not positive
+   */
+  public ManhattanHeuristic(int rows, int columns, boolean wrapped) 
+      throws IllegalArgumentException {
+    if (rows < 1 || columns < 1) {
+      throw new IllegalArgumentException("Rows and columns must be positive.");
+    }
+    this.rows = rows;
+    this.columns = columns;
+    this.wrapped = wrapped;
+  }
+  
+  @Override
+  public int estimate(int cell, int target) {
+    int rowGap = Math.abs(cell / this.columns - target / this.columns);
+    int columnGap = Math.abs(cell % this.columns - target % this.columns);
+    if (this.wrapped) {
+      rowGap = Math.min(rowGap, this.rows - rowGap);
+      columnGap = Math.min(columnGap, this.columns - columnGap);
+    }
+    return rowGap + columnGap;
+  }
+
+}
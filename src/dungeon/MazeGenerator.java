@@ -0,0 +1,25 @@
+package dungeon;
+
+/**
+ * Interface representing a strategy that builds the initial maze of a dungeon. A
+ * generator connects the cells of a grid forming a spanning tree, so every location
+ * can be reached from any other one through exactly one path. Extra connections
+ * added later by the interconnectivity of the dungeon are not its concern.
+ *
+ */
+public interface MazeGenerator {
+  
+  /**
+   * Generates the maze of a dungeon.
+   * @param rows number of rows of the dungeon.
+   * @param columns number of columns of the dungeon.
+   * @param wrapped boolean that indicates if connections can wrap around the edges.
+   * @param seed long that initializes the pseudorandom series of the generator, so
+   *     the same seed always gives the same maze.
+   * @return connection grid with the connections of the maze.
+   * @throws IllegalArgumentException when rows or columns are not positive
+   */
+  public ConnectionGrid generate(int rows, int columns, boolean wrapped, long seed) 
+      throws IllegalArgumentException;
+
+}
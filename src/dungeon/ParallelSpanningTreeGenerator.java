@@ -0,0 +1,172 @@
+package dungeon;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Generator of random spanning trees for very large grids that spreads the work of
+ * Kruskal's algorithm across the workers of a fork join pool. The grid is split in
+ * horizontal stripes of rows and every stripe builds its own random spanning tree
+ * concurrently, with its own disjoint set over its cells. A final union find pass
+ * over the edges between stripes joins them, so the result is a single spanning tree
+ * and every cell can reach every other one.
+ * The random streams of the stripes are split from the seed before any task starts,
+ * so for the same seed and number of stripes the tree is always the same no matter
+ * how the tasks are scheduled.
+ *
+ */
+public class ParallelSpanningTreeGenerator implements MazeGenerator {
+  
+  private final ForkJoinPool pool;
+  private final int stripes;
+  
+  /**
+   * Constructor of the generator.
+   * @param pool fork join pool that builds the stripes.
+   * @param stripes int with the number of horizontal stripes, usually the number
+   *     of threads of the pool.
+   * @throws IllegalArgumentException when pool is null or stripes is not positive
+   */
+  public ParallelSpanningTreeGenerator(ForkJoinPool pool, int stripes)
+      throws IllegalArgumentException {
+    if (pool == null) {
+      throw new IllegalArgumentException("Pool cannot be null.");
+    }
+    if (stripes < 1) {
+      throw new IllegalArgumentException("The number of stripes must be positive.");
+    }
+    this.pool = pool;
+    this.stripes = stripes;
+  }
+  
+  @Override
+  public ConnectionGrid generate(int rows, int columns, boolean wrapped, long seed)
+      throws IllegalArgumentException {
+    if (rows < 1 || columns < 1) {
+      throw new IllegalArgumentException("Columns or rows must be positive.");
+    }
+    ConnectionGrid grid = new ConnectionGridImpl(rows, columns);
+    int count = Math.min(this.stripes, rows);
+    int[] firstRows = new int[count + 1];
+    for (int s = 0; s <= count; s++) {
+      firstRows[s] = (int) ((long) s * rows / count);
+    }
+    
+    // Stripes only write the masks of their own cells, so they can share the grid.
+    SplittableRandom root = new SplittableRandom(seed);
+    ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[count];
+    for (int s = 0; s < count; s++) {
+      int first = firstRows[s];
+      int last = firstRows[s + 1];
+      SplittableRandom random = root.split();
+      tasks[s] = this.pool.submit(
+          () -> buildStripe(grid, first, last, wrapped, random));
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      task.join();
+    }
+    
+    // The south edges of the last row of every stripe are the seams between stripes.
+    int[] seams = new int[(count > 1) ? count * columns : 0];
+    int used = 0;
+    for (int s = 0; s < seams.length / columns; s++) {
+      int row = firstRows[s + 1] - 1;
+      if (row + 1 < rows || (wrapped && rows > 2)) {
+        for (int col = 0; col < columns; col++) {
+          seams[used++] = row * columns + col;
+        }
+      }
+    }
+    SplittableRandom random = root.split();
+    shuffle(seams, used, random);
+    int[] stripeOfRow = new int[rows];
+    for (int s = 0; s < count; s++) {
+      for (int row = firstRows[s]; row < firstRows[s + 1]; row++) {
+        stripeOfRow[row] = s;
+      }
+    }
+    DisjointSet stripeSets = new DisjointSetImpl(count);
+    for (int i = 0; i < used && stripeSets.getSetCount() > 1; i++) {
+      int row = seams[i] / columns;
+      int col = seams[i] % columns;
+      int nextRow = (row + 1) % rows;
+      if (stripeSets.union(stripeOfRow[row], stripeOfRow[nextRow])) {
+        grid.addConnection(row, col, nextRow, col);
+        grid.addConnection(nextRow, col, row, col);
+      }
+    }
+    return grid;
+  }
+  
+  /**
+   * Helper that builds a random spanning tree over the rows of a stripe running
+   * Kruskal's algorithm over its inner edges in random order.
+   * @param grid connection grid where the tree is written.
+   * @param first int index of the first row of the stripe.
+   * @param last int index of the row after the stripe.
+   * @param wrapped boolean that indicates if connections can wrap around the edges.
+   * @param random random stream of the stripe.
+   */
+  private static void buildStripe(ConnectionGrid grid, int first, int last,
+      boolean wrapped, SplittableRandom random) {
+    int rows = grid.getRows();
+    int columns = grid.getColumns();
+    boolean eastWraps = wrapped && columns > 2;
+    boolean southWraps = wrapped && rows > 2 && first == 0 && last == rows;
+    
+    // Edges are packed as twice the id of their north or west cell, plus one for
+    // the ones going south.
+    int[] edges = new int[2 * (last - first) * columns];
+    int used = 0;
+    for (int row = first; row < last; row++) {
+      for (int col = 0; col < columns; col++) {
+        int cell = row * columns + col;
+        if (col + 1 < columns || eastWraps) {
+          edges[used++] = 2 * cell;
+        }
+        if (row + 1 < last || southWraps) {
+          edges[used++] = 2 * cell + 1;
+        }
+      }
+    }
+    shuffle(edges, used, random);
+    
+    int offset = first * columns;
+    DisjointSet cellSets = new DisjointSetImpl((last - first) * columns);
+    for (int i = 0; i < used && cellSets.getSetCount() > 1; i++) {
+      int cell = edges[i] >>> 1;
+      int row = cell / columns;
+      int col = cell % columns;
+      int nextRow = row;
+      int nextCol = col;
+      if ((edges[i] & 1) == 0) {
+        nextCol = (col + 1) % columns;
+      }
+      else {
+        nextRow = (row + 1) % rows;
+      }
+      int next = nextRow * columns + nextCol;
+      if (cellSets.union(cell - offset, next - offset)) {
+        grid.addConnection(row, col, nextRow, nextCol);
+        grid.addConnection(nextRow, nextCol, row, col);
+      }
+    }
+  }
+  
+  /**
+   * Helper that shuffles the first positions of an array with Fisher-Yates.
+   * @param values array to be shuffled.
+   * @param length int with the number of positions used.
+   * @param random random stream used.
+   */
+  private static void shuffle(int[] values, int length, SplittableRandom random) {
+    for (int i = length - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int aux = values[i];
+      values[i] = values[j];
+      values[j] = aux;
+    }
+  }
+
+}
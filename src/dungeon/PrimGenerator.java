@@ -0,0 +1,57 @@
+package dungeon;
+
+import java.util.Random;
+
+/**
+ * Maze generator based on randomized Prim's algorithm. The maze grows from a random
+ * cell, and at every step a random connection of the frontier between the maze and
+ * the rest of the grid is carved. Mazes have many short branches and dead ends.
+ *
+ */
+public class PrimGenerator extends AbstractMazeGenerator {
+  
+  @Override
+  protected void carve(ConnectionGrid grid, boolean wrapped, Random random) {
+    int cells = grid.getCellCount();
+    boolean[] inMaze = new boolean[cells];
+    
+    // Frontier connections are packed as cell * 4 plus the direction ordinal and
+    // removed by swapping them with the last one.
+    int[] frontier = new int[4 * cells];
+    int first = random.nextInt(cells);
+    inMaze[first] = true;
+    int size = this.addFrontier(grid, wrapped, first, frontier, 0);
+    while (size > 0) {
+      int index = random.nextInt(size);
+      int connection = frontier[index];
+      frontier[index] = frontier[--size];
+      int cell = connection >>> 2;
+      int neighbour = getNeighbour(grid, wrapped, cell, DIRECTIONS[connection & 3]);
+      if (!inMaze[neighbour]) {
+        inMaze[neighbour] = true;
+        connect(grid, cell, neighbour);
+        size = this.addFrontier(grid, wrapped, neighbour, frontier, size);
+      }
+    }
+  }
+  
+  /**
+   * Helper that adds the connections of a cell to the frontier.
+   * @param grid connection grid of the dungeon.
+   * @param wrapped boolean that indicates if connections can wrap around the edges.
+   * @param cell int id of the cell just added to the maze.
+   * @param frontier array with the connections of the frontier.
+   * @param size int with the number of connections in the frontier.
+   * @return int with the new number of connections in the frontier.
+   */
+  private int addFrontier(ConnectionGrid grid, boolean wrapped, int cell, 
+      int[] frontier, int size) {
+    for (Direction dir : DIRECTIONS) {
+      if (getNeighbour(grid, wrapped, cell, dir) != -1) {
+        frontier[size++] = cell * 4 + dir.ordinal();
+      }
+    }
+    return size;
+  }
+
+}
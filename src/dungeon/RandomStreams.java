@@ -0,0 +1,83 @@
+package dungeon;
+
+import java.util.SplittableRandom;
+
+/**
+ * Hierarchy of pseudorandom streams derived from a single seed. Every generation
+ * phase and every chunk of an unbounded dungeon gets an independent stream, derived
+ * only from the seed and its own identity, so the streams do not depend on the order
+ * in which they are requested and phases can draw from them on different threads
+ * without changing the result. The same seed always gives the same dungeon.
+ *
+ */
+public class RandomStreams {
+  
+  private static final long PHASE_SALT = 0x5048415345L;
+  private static final long CHUNK_SALT = 0x4348554E4BL;
+  private final long seed;
+  
+  /**
+   * Constructor of the streams.
+   * @param seed long from which every stream is derived.
+   */
+  public RandomStreams(long seed) {
+    this.seed = seed;
+  }
+  
+  /**
+   * Getter of the seed of the streams.
+   * @return long with the seed.
+   */
+  public long getSeed() {
+    return this.seed;
+  }
+  
+  /**
+   * Creates the stream of a generation phase. Every call returns a new stream that
+   * starts at the same point.
+   * @param phase generation phase that uses the stream.
+   * @return pseudorandom stream of the phase.
+   * @throws IllegalArgumentException when phase is null
+   */
+  public SplittableRandom forPhase(GenerationPhase phase) throws IllegalArgumentException {
+    if (phase == null) {
+      throw new IllegalArgumentException("Phase cannot be null.");
+    }
+    return stream(mix(mix(this.seed ^ PHASE_SALT) + phase.ordinal()));
+  }
+  
+  /**
+   * Creates the stream of a chunk of an unbounded dungeon. Every call returns a new
+   * stream that starts at the same point.
+   * @param chunkRow int row of the chunk.
+   * @param chunkColumn int column of the chunk.
+   * @return pseudorandom stream of the chunk.
+   */
+  public SplittableRandom forChunk(int chunkRow, int chunkColumn) {
+    return stream(mix(mix(mix(this.seed ^ CHUNK_SALT) + chunkRow) + chunkColumn));
+  }
+  
+  /**
+   * Helper that creates a stream from a derived key. Streams built directly from
+   * different seeds walk the same sequence from different points, so the stream is
+   * split once to also get its own increment.
+   * @param key long derived from the seed and the identity of the stream.
+   * @return pseudorandom stream.
+   */
+  private static SplittableRandom stream(long key) {
+    return new SplittableRandom(key).split();
+  }
+  
+  /**
+   * Helper that scrambles the bits of a value with the finalizer of SplitMix64.
+   * @param value long to be scrambled.
+   * @return long with the scrambled value.
+   */
+  private static long mix(long value) {
+    long z = value + 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+}
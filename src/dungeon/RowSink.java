@@ -0,0 +1,21 @@
+package dungeon;
+
+/**
+ * Interface representing the destination of a maze that is generated one row at a
+ * time, so dungeons too tall to fit in memory can be written to a file or consumed
+ * as they are produced.
+ *
+ */
+public interface RowSink {
+  
+  /**
+   * Receives the next row of the maze. The connections of every cell are given as a
+   * mask with one bit per direction, set at the position of its ordinal.
+   * @param row int index of the row, starting at 0.
+   * @param masks array with the connection mask of every cell of the row. It is reused
+   *     for the next row, so it must be copied to be kept.
+   * @throws IllegalStateException when the row cannot be stored
+   */
+  public void acceptRow(int row, byte[] masks) throws IllegalStateException;
+
+}
@@ -0,0 +1,84 @@
+package dungeon;
+
+import java.util.SplittableRandom;
+
+/**
+ * Selector of the start and finish locations of a dungeon that never draws pairs at
+ * random until one fits. A start is sampled, a breadth first search gives the layers
+ * of distance around it, and the finish is chosen uniformly among the caves far
+ * enough from it, so every attempt costs a single traversal of the grid and needs
+ * no table of distances. Starts are sampled without replacement, so when the grid
+ * has no more cells than attempts every possible start is tried before giving up.
+ *
+ */
+public class StartFinishSelector {
+  
+  private static final int[] NO_PAIR = new int[0];
+  private final ConnectionGrid grid;
+  private final BreadthFirstSearch search;
+  private final int[] distances;
+  
+  /**
+   * Constructor of the selector over a grid.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @throws IllegalArgumentException when grid is null
+   */
+  public StartFinishSelector(ConnectionGrid grid) throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    this.grid = grid;
+    this.search = new BreadthFirstSearch(grid);
+    this.distances = new int[grid.getCellCount()];
+  }
+  
+  /**
+   * Selects a start and a finish at least a given number of steps apart. The start
+   * can be any location and the finish is always a cave.
+   * @param minDistance int with the minimum number of steps between both.
+   * @param maxAttempts int with the maximum number of starts to be tried.
+   * @param random pseudorandom series used for the sampling.
+   * @return array with the id of the start and the id of the finish, or an empty
+   *     array if none of the tried starts has a cave far enough.
+   * @throws IllegalArgumentException when maxAttempts is not positive or random is null
+   */
+  public int[] select(int minDistance, int maxAttempts, SplittableRandom random) 
+      throws IllegalArgumentException {
+    if (maxAttempts < 1) {
+      throw new IllegalArgumentException("The number of attempts must be positive.");
+    }
+    if (random == null) {
+      throw new IllegalArgumentException("Random cannot be null.");
+    }
+    int cells = this.distances.length;
+    int[] starts = new int[cells];
+    for (int cell = 0; cell < cells; cell++) {
+      starts[cell] = cell;
+    }
+    int attempts = Math.min(maxAttempts, cells);
+    for (int i = 0; i < attempts; i++) {
+      int j = i + random.nextInt(cells - i);
+      int start = starts[j];
+      starts[j] = starts[i];
+      starts[i] = start;
+      
+      // Reservoir sampling over the caves far enough picks one of them uniformly
+      // in the same pass that finds them.
+      this.search.run(start, this.distances);
+      int finish = -1;
+      int candidates = 0;
+      for (int cell = 0; cell < cells; cell++) {
+        int distance = this.distances[cell];
+        if (distance >= minDistance && distance != DistanceEngine.UNREACHABLE 
+            && this.grid.getDegree(cell) != 2 && random.nextInt(++candidates) == 0) {
+          finish = cell;
+        }
+      }
+      if (finish != -1) {
+        return new int[] {start, finish};
+      }
+    }
+    return NO_PAIR;
+  }
+
+}
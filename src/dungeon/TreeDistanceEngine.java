@@ -0,0 +1,250 @@
+package dungeon;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Distance engine for dungeons whose connections form a spanning tree, as they do
+ * when the interconnectivity is zero. The distance between two cells is then
+ * depth(a) + depth(b) - 2 * depth(lca(a, b)), where the lowest common ancestor is found
+ * with a heavy-light decomposition of the tree in O(log V) time and O(V) memory.
+ * When a few extra edges close cycles, paths can also go through them, so the engine
+ * keeps the shortest distances between the endpoints of those k edges and checks every
+ * route entering and leaving that small set.
+ *
+ */
+public class TreeDistanceEngine implements DistanceEngine {
+  
+  private static final Direction[] DIRECTIONS = Direction.values();
+  private final int cells;
+  private final int[] parent;
+  private final int[] depth;
+  private final int[] head;
+  private final int[] component;
+  private final int[] endpoints;
+  private final int[][] endpointDistances;
+  
+  /**
+   * Constructor that builds the spanning forest of the grid and its decomposition.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @throws IllegalArgumentException when grid is null
+   */
+  public TreeDistanceEngine(ConnectionGrid grid) throws IllegalArgumentException {
+    if (grid == null) {
+      throw new IllegalArgumentException("Grid cannot be null.");
+    }
+    this.cells = grid.getCellCount();
+    this.parent = new int[this.cells];
+    this.depth = new int[this.cells];
+    this.head = new int[this.cells];
+    this.component = new int[this.cells];
+    int[] order = this.buildForest(grid);
+    this.decompose(order);
+    
+    // Every connection that is not part of the forest is an extra edge.
+    Set<Long> extraEdges = new LinkedHashSet<Long>();
+    for (int cell = 0; cell < this.cells; cell++) {
+      for (Direction dir : DIRECTIONS) {
+        int neighbour = grid.getNeighbour(cell, dir);
+        if (neighbour > cell && this.parent[neighbour] != cell 
+            && this.parent[cell] != neighbour) {
+          extraEdges.add(((long) cell << 32) | neighbour);
+        }
+      }
+    }
+    this.endpoints = this.collectEndpoints(extraEdges);
+    this.endpointDistances = this.calculateEndpointDistances(extraEdges);
+  }
+  
+  @Override
+  public int getDistance(int origin, int destination) throws IllegalArgumentException {
+    if (origin < 0 || origin >= this.cells || destination < 0 || destination >= this.cells) {
+      throw new IllegalArgumentException("Cells are outside of the grid.");
+    }
+    int best = this.getTreeDistance(origin, destination);
+    if (best == UNREACHABLE || this.endpoints.length == 0) {
+      return best;
+    }
+    
+    // Routes through the extra edges enter the endpoint set at x and leave it at y.
+    int size = this.endpoints.length;
+    int[] fromOrigin = new int[size];
+    int[] toDestination = new int[size];
+    for (int i = 0; i < size; i++) {
+      fromOrigin[i] = this.getTreeDistance(origin, this.endpoints[i]);
+      toDestination[i] = this.getTreeDistance(this.endpoints[i], destination);
+    }
+    for (int x = 0; x < size; x++) {
+      if (fromOrigin[x] >= best) {
+        continue;
+      }
+      for (int y = 0; y < size; y++) {
+        int route = fromOrigin[x] + this.endpointDistances[x][y] + toDestination[y];
+        if (route < best) {
+          best = route;
+        }
+      }
+    }
+    return best;
+  }
+  
+  /**
+   * Returns the number of distinct endpoints of the edges outside of the spanning forest.
+   * @return int with the endpoints count, two per extra edge at most.
+   */
+  public int getEndpointCount() {
+    return this.endpoints.length;
+  }
+  
+  /**
+   * Helper method that builds a breadth first spanning forest of the grid, filling
+   * parents, depths and components.
+   * @param grid connection grid with the final connections of the dungeon.
+   * @return array with every cell in breadth first order, parents before children.
+   */
+  private int[] buildForest(ConnectionGrid grid) {
+    int[] order = new int[this.cells];
+    Arrays.fill(this.component, -1);
+    int tail = 0;
+    for (int root = 0; root < this.cells; root++) {
+      if (this.component[root] != -1) {
+        continue;
+      }
+      this.component[root] = root;
+      this.parent[root] = -1;
+      this.depth[root] = 0;
+      int head = tail;
+      order[tail++] = root;
+      while (head < tail) {
+        int cell = order[head++];
+        for (Direction dir : DIRECTIONS) {
+          int neighbour = grid.getNeighbour(cell, dir);
+          if (neighbour != -1 && this.component[neighbour] == -1) {
+            this.component[neighbour] = root;
+            this.parent[neighbour] = cell;
+            this.depth[neighbour] = this.depth[cell] + 1;
+            order[tail++] = neighbour;
+          }
+        }
+      }
+    }
+    return order;
+  }
+  
+  /**
+   * Helper method for the heavy-light decomposition. Every cell continues the chain of
+   * its parent if it is the parent's biggest subtree, otherwise it starts a new chain.
+   * @param order every cell in breadth first order.
+   */
+  private void decompose(int[] order) {
+    int[] size = new int[this.cells];
+    int[] heavy = new int[this.cells];
+    Arrays.fill(heavy, -1);
+    for (int i = this.cells - 1; i >= 0; i--) {
+      int cell = order[i];
+      size[cell]++;
+      int up = this.parent[cell];
+      if (up != -1) {
+        size[up] += size[cell];
+        if (heavy[up] == -1 || size[cell] > size[heavy[up]]) {
+          heavy[up] = cell;
+        }
+      }
+    }
+    for (int cell : order) {
+      int up = this.parent[cell];
+      this.head[cell] = (up != -1 && heavy[up] == cell) ? this.head[up] : cell;
+    }
+  }
+  
+  /**
+   * Helper that returns the distance between two cells using only tree edges.
+   * @param a int id of the cell at one extreme.
+   * @param b int id of the cell at the other extreme.
+   * @return int with the number of tree edges between them, or UNREACHABLE.
+   */
+  private int getTreeDistance(int a, int b) {
+    if (this.component[a] != this.component[b]) {
+      return UNREACHABLE;
+    }
+    int u = a;
+    int v = b;
+    while (this.head[u] != this.head[v]) {
+      if (this.depth[this.head[u]] > this.depth[this.head[v]]) {
+        u = this.parent[this.head[u]];
+      }
+      else {
+        v = this.parent[this.head[v]];
+      }
+    }
+    int lca = (this.depth[u] < this.depth[v]) ? u : v;
+    return this.depth[a] + this.depth[b] - 2 * this.depth[lca];
+  }
+  
+  /**
+   * Helper that lists the distinct endpoints of the extra edges.
+   * @param extraEdges set of extra edges packed as (a << 32) | b.
+   * @return array with the endpoint cell ids.
+   */
+  private int[] collectEndpoints(Set<Long> extraEdges) {
+    Set<Integer> result = new LinkedHashSet<Integer>();
+    for (long edge : extraEdges) {
+      result.add((int) (edge >>> 32));
+      result.add((int) edge);
+    }
+    int[] array = new int[result.size()];
+    int i = 0;
+    for (int cell : result) {
+      array[i++] = cell;
+    }
+    return array;
+  }
+  
+  /**
+   * Helper that computes the shortest distances between every pair of endpoints,
+   * combining tree paths and extra edges with Floyd-Warshall over the small set.
+   * @param extraEdges set of extra edges packed as (a << 32) | b.
+   * @return matrix of distances indexed as the endpoints array.
+   */
+  private int[][] calculateEndpointDistances(Set<Long> extraEdges) {
+    int size = this.endpoints.length;
+    int[][] dist = new int[size][size];
+    for (int x = 0; x < size; x++) {
+      for (int y = 0; y < size; y++) {
+        dist[x][y] = this.getTreeDistance(this.endpoints[x], this.endpoints[y]);
+      }
+    }
+    for (long edge : extraEdges) {
+      int x = this.indexOfEndpoint((int) (edge >>> 32));
+      int y = this.indexOfEndpoint((int) edge);
+      dist[x][y] = Math.min(dist[x][y], 1);
+      dist[y][x] = Math.min(dist[y][x], 1);
+    }
+    for (int m = 0; m < size; m++) {
+      for (int x = 0; x < size; x++) {
+        for (int y = 0; y < size; y++) {
+          if (dist[x][m] + dist[m][y] < dist[x][y]) {
+            dist[x][y] = dist[x][m] + dist[m][y];
+          }
+        }
+      }
+    }
+    return dist;
+  }
+  
+  /**
+   * Helper that returns the position of a cell in the endpoints array.
+   * @param cell int id of an endpoint.
+   * @return int index of the endpoint.
+   */
+  private int indexOfEndpoint(int cell) {
+    for (int i = 0; i < this.endpoints.length; i++) {
+      if (this.endpoints[i] == cell) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+}
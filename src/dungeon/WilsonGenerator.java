@@ -0,0 +1,45 @@
+package dungeon;
+
+import java.util.Random;
+
+/**
+ * Maze generator based on Wilson's algorithm, which picks every spanning tree of the
+ * grid with the same probability. Starting from a random cell, every cell outside of
+ * the tree starts a random walk that ends when it hits the tree, and the walk with
+ * its loops erased is added to it. Mazes are unbiased, with many short dead ends.
+ *
+ */
+public class WilsonGenerator extends AbstractMazeGenerator {
+  
+  @Override
+  protected void carve(ConnectionGrid grid, boolean wrapped, Random random) {
+    int cells = grid.getCellCount();
+    boolean[] inTree = new boolean[cells];
+    int[] next = new int[cells];
+    int[] neighbours = new int[4];
+    inTree[random.nextInt(cells)] = true;
+    
+    for (int start = 0; start < cells; start++) {
+      // Walking over a cell again overwrites its exit, which erases the loop.
+      int cell = start;
+      while (!inTree[cell]) {
+        int count = 0;
+        for (Direction dir : DIRECTIONS) {
+          int neighbour = getNeighbour(grid, wrapped, cell, dir);
+          if (neighbour != -1) {
+            neighbours[count++] = neighbour;
+          }
+        }
+        next[cell] = neighbours[random.nextInt(count)];
+        cell = next[cell];
+      }
+      cell = start;
+      while (!inTree[cell]) {
+        inTree[cell] = true;
+        connect(grid, cell, next[cell]);
+        cell = next[cell];
+      }
+    }
+  }
+
+}
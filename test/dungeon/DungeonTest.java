@@ -4,7 +4,19 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -242,7 +254,7 @@ public class DungeonTest {
       
       for (int i = 0; i < 4; i++) {
         for (int j = 0; j < 30; j++) {
-          Game specialGame = new GameImpl(rows, columns, 10, true, 80, "Link", 1, 1, true);
+          Game specialGame = new GameImpl(rows, columns, 10, true, 80, "Link", 1, 30 * i + j, true);
           Location current = specialGame.getPlayer().getLastTurn().getLocation();
           if (current.getPossibleDirections().contains(posibleDirections[i])) {
             specialGame.move(posibleDirections[i]);
@@ -354,7 +366,7 @@ public class DungeonTest {
     boolean found = false;
     try {
       for (int i = 0; i < 100; i++) {
-        Game specialGame = new GameImpl(rows, columns, 1, true, 100, "Link", 1, 1, true);
+        Game specialGame = new GameImpl(rows, columns, 1, true, 100, "Link", 1, i, true);
         Direction dir = specialGame.getPlayer().getLastTurn().getLocation()
             .getPossibleDirections().get(0);
         Location newLocation = specialGame.move(dir);
@@ -375,7 +387,7 @@ public class DungeonTest {
     boolean found = false;
     try {
       for (int i = 0; i < 100; i++) {
-        Game specialGame = new GameImpl(rows, columns, 1, true, 100, "Link", 10, 1, true);
+        Game specialGame = new GameImpl(rows, columns, 1, true, 100, "Link", 10, i, true);
         Player p = this.gHard.getPlayer();
         Location currentLocation = p.getLastTurn().getLocation();
         Direction dir = currentLocation.getPossibleDirections().get(0);
@@ -403,7 +415,7 @@ public class DungeonTest {
     int expectedValue = 4;
     try {
       for (int i = 0; i < 100; i++) {
-        Game specialGame = new GameImpl(rows, columns, 1, true, 100, "Link", 1, 1, true);
+        Game specialGame = new GameImpl(rows, columns, 1, true, 100, "Link", 1, i, true);
         Player p = this.gHard.getPlayer();
         Turn currentTurn = specialGame.getPlayer().getLastTurn();
         Direction dir = specialGame.getPlayer().getLastTurn().getLocation()
@@ -421,4 +433,824 @@ public class DungeonTest {
       fail("Arrows were not collected as they should have been.");
     }
   }
+  
+  @Test
+  public void testDisjointSetUnion() {
+    DisjointSet sets = new DisjointSetImpl(6);
+    try {
+      assertTrue(sets.union(0, 1));
+      assertTrue(sets.union(2, 3));
+      assertTrue(sets.union(1, 3));
+      assertEquals(false, sets.union(0, 2));
+      assertTrue(sets.connected(0, 3));
+      assertEquals(false, sets.connected(0, 4));
+      assertEquals(3, sets.getSetCount());
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+  }
+  
+  @Test
+  public void testConnectionsMatchDirections() {
+    Dungeon d = new DungeonImpl(4, 7, true, 2, 30, 1, 1, true);
+    Location[][] locations = d.getLocations();
+    
+    try {
+      for (int i = 0; i < 4; i++) {
+        for (int j = 0; j < 7; j++) {
+          Location l = locations[i][j];
+          for (int[] n : l.getNeighbours()) {
+            Location neighbour = locations[n[0]][n[1]];
+            assertTrue(d.checkConnections(l, neighbour));
+            assertTrue(d.checkConnections(neighbour, l));
+          }
+        }
+      }
+      assertEquals(false, d.checkConnections(locations[0][0], locations[2][3]));
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+  }
+  
+  @Test
+  public void testBfsDistancesMatchFloydWarshall() {
+    ConnectionGrid grid = this.createSampleGrid();
+    DistanceEngine floyd = new FloydWarshallDistanceEngine(grid);
+    DistanceEngine bfs = new BfsDistanceEngine(grid);
+    
+    try {
+      for (int i = 0; i < grid.getCellCount(); i++) {
+        for (int j = 0; j < grid.getCellCount(); j++) {
+          assertEquals(floyd.getDistance(i, j), bfs.getDistance(i, j));
+        }
+      }
+      assertEquals(3, bfs.getDistance(grid.getCellId(0, 0), grid.getCellId(2, 1)));
+      assertEquals(6, bfs.getDistance(grid.getCellId(0, 0), grid.getCellId(3, 3)));
+      assertEquals(DistanceEngine.UNREACHABLE, 
+          bfs.getDistance(grid.getCellId(0, 0), grid.getCellId(2, 2)));
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+  }
+  
+  @Test
+  public void testLazyDistancesMatchAllPairs() {
+    ConnectionGrid grid = this.createSampleGrid();
+    
+    try {
+      this.assertMatchesBfs(grid, new LazyDistanceEngine(grid, 1));
+      // A cache much smaller than the sources keeps evicting rows while the pairs are read.
+      ConnectionGrid large = this.createLargeGrid(4);
+      this.assertMatchesBfs(large, new LazyDistanceEngine(large, 16));
+      Dungeon d = new DungeonImpl(rows, columns, true, 1, 30, 1, 1, true, DistanceMode.LAZY);
+      assertTrue(d.getPathDistance(d.getStart(), d.getFinish()) >= 5);
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+  }
+  
+  @Test
+  public void testParallelDistancesMatchSerial() {
+    ForkJoinPool pool = new ForkJoinPool(2);
+    
+    try {
+      // The larger grid has more sources than one task takes, so the range is split.
+      ConnectionGrid[] grids = {this.createSampleGrid(), this.createLargeGrid(5)};
+      for (ConnectionGrid grid : grids) {
+        DistanceEngine serial = new BfsDistanceEngine(grid);
+        DistanceEngine parallel = new BfsDistanceEngine(grid, pool);
+        for (int i = 0; i < grid.getCellCount(); i++) {
+          for (int j = 0; j < grid.getCellCount(); j++) {
+            assertEquals(serial.getDistance(i, j), parallel.getDistance(i, j));
+          }
+        }
+      }
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+  
+  @Test
+  public void testCompactDistanceStoreReopen() throws IOException {
+    ConnectionGrid grid = this.createSampleGrid();
+    DistanceEngine bfs = new BfsDistanceEngine(grid);
+    Path file = Files.createTempFile("dungeon", ".dist");
+    Files.delete(file);
+    
+    try {
+      DistanceEngine created = CompactDistanceStore.openOrCreate(file, grid);
+      DistanceEngine reopened = CompactDistanceStore.open(file);
+      for (int i = 0; i < grid.getCellCount(); i++) {
+        for (int j = 0; j < grid.getCellCount(); j++) {
+          assertEquals(bfs.getDistance(i, j), created.getDistance(i, j));
+          assertEquals(bfs.getDistance(i, j), reopened.getDistance(i, j));
+        }
+      }
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+  
+  @Test
+  public void testCompactDistanceStoreRebuildsUnfinishedTables() throws IOException {
+    // The far end of a single row of 65536 cells is too far for 16 bit distances.
+    ConnectionGrid line = new ConnectionGridImpl(1, 65536);
+    for (int col = 1; col < 65536; col++) {
+      line.addConnection(0, col - 1, 0, col);
+      line.addConnection(0, col, 0, col - 1);
+    }
+    ConnectionGrid grid = this.createSampleGrid();
+    DistanceEngine bfs = new BfsDistanceEngine(grid);
+    Path file = Files.createTempFile("dungeon", ".dist");
+    Files.delete(file);
+    
+    try {
+      for (int attempt = 0; attempt < 2; attempt++) {
+        try {
+          CompactDistanceStore.openOrCreate(file, line);
+          fail("A table that does not fit should not be returned.");
+        }
+        catch (IllegalStateException e) {
+          assertTrue(!Files.exists(file));
+        }
+      }
+      
+      // A build interrupted before the header is written leaves it zeroed.
+      Files.write(file, new byte[64]);
+      DistanceEngine rebuilt = CompactDistanceStore.openOrCreate(file, grid);
+      DistanceEngine reopened = CompactDistanceStore.openOrCreate(file, grid);
+      for (int i = 0; i < grid.getCellCount(); i++) {
+        for (int j = 0; j < grid.getCellCount(); j++) {
+          assertEquals(bfs.getDistance(i, j), rebuilt.getDistance(i, j));
+          assertEquals(bfs.getDistance(i, j), reopened.getDistance(i, j));
+        }
+      }
+    }
+    finally {
+      Files.deleteIfExists(file);
+    }
+  }
+  
+  @Test
+  public void testBlockedFloydWarshallMatchesBfs() {
+    ConnectionGrid grid = this.createSampleGrid();
+    ConnectionGrid large = this.createLargeGrid(7);
+    
+    try {
+      this.assertMatchesBfs(grid, new BlockedFloydWarshallDistanceEngine(grid, 3));
+      // 400 cells are not a multiple of 7, so the last block is a partial one.
+      this.assertMatchesBfs(large, new BlockedFloydWarshallDistanceEngine(large, 7));
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+  }
+  
+  @Test
+  public void testTreeDistancesMatchBfs() {
+    ConnectionGrid grid = this.createSampleGrid();
+    
+    try {
+      for (int extraEdges = 0; extraEdges < 2; extraEdges++) {
+        if (extraEdges == 1) {
+          grid.addConnection(1, 2, 0, 2);
+          grid.addConnection(0, 2, 1, 2);
+        }
+        DistanceEngine bfs = new BfsDistanceEngine(grid);
+        TreeDistanceEngine tree = new TreeDistanceEngine(grid);
+        assertEquals(2 * extraEdges, tree.getEndpointCount());
+        for (int i = 0; i < grid.getCellCount(); i++) {
+          for (int j = 0; j < grid.getCellCount(); j++) {
+            assertEquals(bfs.getDistance(i, j), tree.getDistance(i, j));
+          }
+        }
+      }
+      // A spanning tree of the larger grid has no extra edges until they are added.
+      ConnectionGrid maze = GenerationStrategy.WILSON.generate(20, 20, true, 8);
+      assertEquals(0, new TreeDistanceEngine(maze).getEndpointCount());
+      ConnectionGrid large = this.createLargeGrid(8);
+      TreeDistanceEngine tree = new TreeDistanceEngine(large);
+      assertTrue(tree.getEndpointCount() > 0);
+      this.assertMatchesBfs(large, tree);
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+  }
+  
+  @Test
+  public void testLandmarkDistancesMatchBfs() {
+    ConnectionGrid grid = this.createSampleGrid();
+    grid.addConnection(1, 2, 0, 2);
+    grid.addConnection(0, 2, 1, 2);
+    DistanceEngine bfs = new BfsDistanceEngine(grid);
+    LandmarkDistanceEngine landmarks = new LandmarkDistanceEngine(grid, 2, 
+        grid.getCellId(3, 3));
+    
+    try {
+      for (int i = 0; i < grid.getCellCount(); i++) {
+        for (int j = 0; j < grid.getCellCount(); j++) {
+          int distance = bfs.getDistance(i, j);
+          assertEquals(distance, landmarks.getDistance(i, j));
+          assertTrue(landmarks.getLowerBound(i, j) <= distance);
+          assertTrue(landmarks.getUpperBound(i, j) >= distance);
+        }
+      }
+      
+      // On the larger grid most pairs are far from every landmark, so the bounds differ.
+      ConnectionGrid large = this.createLargeGrid(9);
+      DistanceEngine largeBfs = new BfsDistanceEngine(large);
+      LandmarkDistanceEngine far = new LandmarkDistanceEngine(large, 4, 0);
+      boolean loose = false;
+      for (int i = 0; i < large.getCellCount(); i++) {
+        for (int j = 0; j < large.getCellCount(); j++) {
+          int distance = largeBfs.getDistance(i, j);
+          assertEquals(distance, far.getDistance(i, j));
+          assertTrue(far.getLowerBound(i, j) <= distance);
+          assertTrue(far.getUpperBound(i, j) >= distance);
+          loose |= far.getLowerBound(i, j) < far.getUpperBound(i, j);
+        }
+      }
+      assertTrue(loose);
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+  }
+  
+  @Test
+  public void testHierarchicalDistancesMatchBfs() {
+    // Chunks of 7 leave partial chunks on the borders of the 20x20 grid.
+    ConnectionGrid[] grids = {this.createSampleGrid(), this.createLargeGrid(10)};
+    int[] chunkSizes = {3, 7};
+    
+    try {
+      for (int k = 0; k < grids.length; k++) {
+        ConnectionGrid grid = grids[k];
+        DistanceEngine bfs = new BfsDistanceEngine(grid);
+        HierarchicalDistanceEngine chunks = new HierarchicalDistanceEngine(grid, chunkSizes[k]);
+        for (int i = 0; i < grid.getCellCount(); i++) {
+          for (int j = 0; j < grid.getCellCount(); j++) {
+            int distance = bfs.getDistance(i, j);
+            assertEquals(distance, chunks.getDistance(i, j));
+            int[] path = chunks.getPath(i, j);
+            if (distance == DistanceEngine.UNREACHABLE) {
+              assertEquals(0, path.length);
+            }
+            else {
+              assertEquals(distance + 1, path.length);
+              assertEquals(j, path[path.length - 1]);
+            }
+          }
+        }
+      }
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+  }
+  
+  @Test
+  public void testContractedDistancesMatchBfs() {
+    ConnectionGrid grid = this.createSampleGrid();
+    
+    try {
+      CaveGraph caves = new CaveGraph(grid);
+      int corner = grid.getCellId(0, 0);
+      assertEquals(grid.getCellId(3, 3), caves.getJumpTarget(corner, Direction.EAST));
+      assertEquals(6, caves.getJumpSteps(corner, Direction.EAST));
+      assertEquals(Direction.SOUTH, caves.getJumpArrival(corner, Direction.EAST));
+      assertEquals(5, caves.getTunnels(corner, Direction.EAST).length);
+      for (int extraEdges = 0; extraEdges < 2; extraEdges++) {
+        if (extraEdges == 1) {
+          grid.addConnection(1, 2, 0, 2);
+          grid.addConnection(0, 2, 1, 2);
+        }
+        DistanceEngine bfs = new BfsDistanceEngine(grid);
+        DistanceEngine contracted = new ContractedDistanceEngine(grid);
+        for (int i = 0; i < grid.getCellCount(); i++) {
+          for (int j = 0; j < grid.getCellCount(); j++) {
+            assertEquals(bfs.getDistance(i, j), contracted.getDistance(i, j));
+          }
+        }
+      }
+      // The larger grid has long tunnels, and extra edges that end inside them.
+      ConnectionGrid large = this.createLargeGrid(11);
+      this.assertMatchesBfs(large, new ContractedDistanceEngine(large));
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+  }
+  
+  @Test
+  public void testShortestPathReconstruction() {
+    Dungeon d = this.gEasy.getDungeon();
+    Location start = d.getStart();
+    Location finish = d.getFinish();
+    
+    try {
+      List<Location> path = d.getPath(start, finish);
+      List<Direction> directions = d.getPathDirections(start, finish);
+      assertEquals(d.getPathDistance(start, finish) + 1, path.size());
+      assertEquals(path.size() - 1, directions.size());
+      assertEquals(start, path.get(0));
+      assertEquals(finish, path.get(path.size() - 1));
+      for (int i = 1; i < path.size(); i++) {
+        assertTrue(d.checkConnections(path.get(i - 1), path.get(i)));
+      }
+      assertEquals(0, d.getPathDirections(start, start).size());
+      
+      ManhattanHeuristic torus = new ManhattanHeuristic(4, 4, true);
+      ManhattanHeuristic flat = new ManhattanHeuristic(4, 4, false);
+      assertEquals(1, torus.estimate(0, 12));
+      assertEquals(3, flat.estimate(0, 12));
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+  }
+  
+  @Test
+  public void testDynamicDistancesFollowEdgeChanges() {
+    ConnectionGrid grid = this.createSampleGrid();
+    DynamicDistanceEngine dynamic = new DynamicDistanceEngine(grid);
+    int[][] changes = {{0, 1}, {4, 5}, {6, 10}, {0, 1}, {4, 5}};
+    
+    try {
+      for (int i = 0; i < changes.length; i++) {
+        if (i < 2) {
+          assertTrue(dynamic.removeEdge(changes[i][0], changes[i][1]));
+        }
+        else {
+          assertTrue(dynamic.addEdge(changes[i][0], changes[i][1]));
+        }
+        DistanceEngine bfs = new BfsDistanceEngine(grid);
+        for (int a = 0; a < grid.getCellCount(); a++) {
+          for (int b = 0; b < grid.getCellCount(); b++) {
+            assertEquals(bfs.getDistance(a, b), dynamic.getDistance(a, b));
+          }
+        }
+      }
+      assertEquals(false, dynamic.addEdge(5, 6));
+    }
+    catch (IllegalArgumentException e) {
+      fail("An exception should not have been thrown.");
+    }
+  }
+  
+  @Test
+  public void testDynamicConnectivityAfterRemovals() {
+    DynamicConnectivity connectivity = new DynamicConnectivityImpl(this.createSampleGrid(), true);
+    assertEquals(2, connectivity.getComponentCount());
+    assertEquals(false, connectivity.connected(0, 10));
+    
+    assertTrue(connectivity.removeEdge(0, 12));
+    assertEquals(3, connectivity.getComponentCount());
+    assertEquals(false, connectivity.connected(0, 13));
+    assertEquals(3, connectivity.getComponentSize(14));
+    assertTrue(connectivity.removeEdge(5, 6));
+    assertTrue(connectivity.connected(0, 5));
+    assertEquals(false, connectivity.connected(0, 6));
+    
+    assertTrue(connectivity.addEdge(14, 15));
+    assertTrue(connectivity.addEdge(6, 10));
+    assertEquals(2, connectivity.getComponentCount());
+    assertTrue(connectivity.connected(13, 0));
+    assertEquals(false, connectivity.connected(6, 0));
+    assertEquals(2, connectivity.getComponentSize(10));
+    
+    try {
+      new DynamicConnectivityImpl(new ConnectionGridImpl(4, 4), false).addEdge(0, 3);
+      fail("Wrapped connections should not be allowed in unwrapped dungeons.");
+    }
+    catch (IllegalArgumentException e) {
+      assertEquals(false, e.getMessage().isEmpty());
+    }
+  }
+  
+  @Test
+  public void testParallelSpanningTreeConnectsAllCells() {
+    ParallelSpanningTreeGenerator generator = 
+        new ParallelSpanningTreeGenerator(ForkJoinPool.commonPool(), 3);
+    
+    for (boolean wrapped : new boolean[] {true, false}) {
+      ConnectionGrid tree = generator.generate(12, 9, wrapped, 42);
+      ConnectionGrid again = new ParallelSpanningTreeGenerator(new ForkJoinPool(1), 3)
+          .generate(12, 9, wrapped, 42);
+      DistanceEngine bfs = new BfsDistanceEngine(tree);
+      int degrees = 0;
+      for (int cell = 0; cell < tree.getCellCount(); cell++) {
+        assertTrue(bfs.getDistance(0, cell) < DistanceEngine.UNREACHABLE);
+        degrees += tree.getDegree(cell);
+        for (Direction dir : Direction.values()) {
+          assertEquals(tree.getNeighbour(cell, dir), again.getNeighbour(cell, dir));
+        }
+      }
+      assertEquals(2 * (tree.getCellCount() - 1), degrees);
+    }
+  }
+  
+  @Test
+  public void testGenerationStrategiesConnectAllLocations() {
+    GenerationStrategy[] strategies = {GenerationStrategy.KRUSKAL, GenerationStrategy.WILSON, 
+        GenerationStrategy.PRIM, GenerationStrategy.BACKTRACKER};
+    int[][] sizes = {{7, 6}, {1, 6}, {30, 30}};
+    
+    for (GenerationStrategy strategy : strategies) {
+      for (int[] size : sizes) {
+        for (int seed = 0; seed < 20; seed++) {
+          ConnectionGrid tree = strategy.generate(size[0], size[1], seed % 2 == 0, seed);
+          DistanceEngine bfs = new BfsDistanceEngine(tree);
+          int degrees = 0;
+          for (int cell = 0; cell < tree.getCellCount(); cell++) {
+            assertTrue(bfs.getDistance(0, cell) < DistanceEngine.UNREACHABLE);
+            degrees += tree.getDegree(cell);
+          }
+          assertEquals(2 * (tree.getCellCount() - 1), degrees);
+        }
+      }
+      
+      Dungeon d = new DungeonImpl(rows, columns, true, 2, 30, 1, 3, true, 
+          DistanceMode.CONTRACTED, strategy);
+      for (Location[] row : d.getLocations()) {
+        for (Location l : row) {
+          assertTrue(d.getPathDistance(d.getStart(), l) < DistanceEngine.UNREACHABLE);
+        }
+      }
+    }
+  }
+  
+  @Test
+  public void testEllerStreamsConnectedRows() throws IOException {
+    EllerGenerator generator = new EllerGenerator();
+    ConnectionGrid tree = generator.generate(9, 7, true, 11);
+    DistanceEngine bfs = new BfsDistanceEngine(tree);
+    int degrees = 0;
+    for (int cell = 0; cell < tree.getCellCount(); cell++) {
+      assertTrue(bfs.getDistance(0, cell) < DistanceEngine.UNREACHABLE);
+      degrees += tree.getDegree(cell);
+    }
+    assertEquals(2 * (tree.getCellCount() - 1), degrees);
+    
+    // Streamed rows must match the grid built from the same seed.
+    Path file = Files.createTempFile("maze", ".rows");
+    try (FileRowSink sink = new FileRowSink(file)) {
+      generator.generate(9, 7, true, 11, sink);
+      assertEquals(9, sink.getRowCount());
+    }
+    byte[] masks = Files.readAllBytes(file);
+    Files.delete(file);
+    assertEquals(tree.getCellCount(), masks.length);
+    for (int cell = 0; cell < masks.length; cell++) {
+      for (Direction dir : Direction.values()) {
+        assertEquals(tree.getNeighbour(cell, dir) != -1, 
+            (masks[cell] & (1 << dir.ordinal())) != 0);
+      }
+    }
+  }
+  
+  @Test
+  public void testChunkedDungeonRegeneratesEvictedChunks() {
+    ChunkedDungeon d = new ChunkedDungeonImpl(7, 6, 1);
+    d.moveTo(0, 0);
+    assertEquals(9, d.getLoadedChunkCount());
+    assertTrue(d.isLoaded(-1, 1));
+    
+    // Window of 5x5 whole chunks around the origin, which must be fully connected.
+    int side = 30;
+    boolean[][] east = new boolean[side][side];
+    boolean[][] south = new boolean[side][side];
+    for (int row = 0; row < side; row++) {
+      for (int col = 0; col < side; col++) {
+        east[row][col] = d.isConnected(row - 12, col - 12, Direction.EAST);
+        south[row][col] = d.isConnected(row - 12, col - 12, Direction.SOUTH);
+        assertEquals(east[row][col], d.isConnected(row - 12, col - 11, Direction.WEST));
+        assertEquals(south[row][col], d.isConnected(row - 11, col - 12, Direction.NORTH));
+      }
+    }
+    boolean[] seen = new boolean[side * side];
+    int[] queue = new int[side * side];
+    int tail = 1;
+    seen[0] = true;
+    for (int head = 0; head < tail; head++) {
+      int row = queue[head] / side;
+      int col = queue[head] % side;
+      int[] next = {
+        (col + 1 < side && east[row][col]) ? queue[head] + 1 : -1,
+        (row + 1 < side && south[row][col]) ? queue[head] + side : -1,
+        (col > 0 && east[row][col - 1]) ? queue[head] - 1 : -1,
+        (row > 0 && south[row - 1][col]) ? queue[head] - side : -1};
+      for (int cell : next) {
+        if (cell != -1 && !seen[cell]) {
+          seen[cell] = true;
+          queue[tail++] = cell;
+        }
+      }
+    }
+    assertEquals(side * side, tail);
+    
+    d.moveTo(600, 600);
+    assertEquals(9, d.getLoadedChunkCount());
+    assertEquals(false, d.isLoaded(0, 0));
+    ChunkedDungeon other = new ChunkedDungeonImpl(7, 6, 1);
+    for (int row = 0; row < side; row++) {
+      for (int col = 0; col < side; col++) {
+        assertEquals(east[row][col], d.isConnected(row - 12, col - 12, Direction.EAST));
+        assertEquals(south[row][col], other.isConnected(row - 12, col - 12, Direction.SOUTH));
+      }
+    }
+  }
+  
+  @Test
+  public void testInterconnectivityBeyondAvailableEdges() {
+    DungeonImpl d = new DungeonImpl(6, 6, false, 1000, 30, 1, 5, true, 
+        DistanceMode.CONTRACTED, GenerationStrategy.WILSON);
+    ConnectionGrid grid = d.getConnectionGrid();
+    int degrees = 0;
+    for (int cell = 0; cell < grid.getCellCount(); cell++) {
+      degrees += grid.getDegree(cell);
+    }
+    assertEquals(2 * 60, degrees);
+    
+    d = new DungeonImpl(6, 6, false, 4, 30, 1, 5, true, DistanceMode.CONTRACTED, 
+        GenerationStrategy.WILSON);
+    grid = d.getConnectionGrid();
+    degrees = 0;
+    for (int cell = 0; cell < grid.getCellCount(); cell++) {
+      degrees += grid.getDegree(cell);
+    }
+    assertEquals(2 * (35 + 4), degrees);
+  }
+  
+  @Test
+  public void testPackedEdgesMatchConnections() {
+    DungeonImpl d = new DungeonImpl(rows, columns, true, 3, 30, 1, 2, true, 
+        DistanceMode.CONTRACTED, GenerationStrategy.WILSON);
+    assertEquals(2 * rows * columns, d.getPotentialEdges().size());
+    
+    EdgeList edges = d.getSelectedEdges();
+    ConnectionGrid grid = d.getConnectionGrid();
+    int degrees = 0;
+    for (int cell = 0; cell < grid.getCellCount(); cell++) {
+      degrees += grid.getDegree(cell);
+    }
+    assertEquals(rows * columns - 1 + 3, edges.size());
+    assertEquals(degrees, 2 * edges.size());
+    Set<Long> keys = new HashSet<Long>();
+    for (int i = 0; i < edges.size(); i++) {
+      assertTrue(keys.add(edges.getKey(i)));
+      assertTrue(edges.getCellA(i) < edges.getCellB(i));
+      Edge e = edges.get(i);
+      assertTrue(d.checkConnections(e.getOrigin(), e.getDestination()));
+      assertEquals(EdgeList.key(edges.getCellB(i), edges.getCellA(i)), edges.getKey(i));
+    }
+  }
+  
+  @Test
+  public void testStartFinishSelectionWithoutRejection() {
+    ConnectionGrid grid = createSampleGrid();
+    DistanceEngine bfs = new BfsDistanceEngine(grid);
+    StartFinishSelector selector = new StartFinishSelector(grid);
+    for (int seed = 0; seed < 50; seed++) {
+      int[] pair = selector.select(5, 64, new SplittableRandom(seed));
+      assertEquals(2, pair.length);
+      assertTrue(bfs.getDistance(pair[0], pair[1]) >= 5);
+      assertTrue(bfs.getDistance(pair[0], pair[1]) < DistanceEngine.UNREACHABLE);
+      assertTrue(grid.getDegree(pair[1]) != 2);
+    }
+    assertEquals(0, selector.select(20, 64, new SplittableRandom(1)).length);
+    
+    try {
+      new DungeonImpl(2, 2, false, 0, 30, 1, 1, true);
+      fail("Start and end cannot be 5 steps apart in a 2x2 dungeon.");
+    }
+    catch (IllegalStateException e) {
+      assertEquals(false, e.getMessage().isEmpty());
+    }
+  }
+  
+  @Test
+  public void testMonstersTakeDistinctCaves() {
+    Dungeon d = new DungeonImpl(rows, columns, true, 2, 30, 4, 9, true);
+    Set<Location> caves = new HashSet<Location>();
+    assertEquals(4, d.getMonsters().size());
+    assertEquals(d.getFinish(), d.getMonsters().get(0).getLocation());
+    for (Monster m : d.getMonsters()) {
+      assertTrue(caves.add(m.getLocation()));
+      assertEquals(LocationType.CAVE, m.getLocation().getType());
+      assertTrue(m.getLocation() != d.getStart());
+    }
+    
+    try {
+      new DungeonImpl(rows, columns, true, 2, 30, rows * columns + 1, 9, true);
+      fail("There cannot be more monsters than caves.");
+    }
+    catch (IllegalArgumentException e) {
+      assertEquals(false, e.getMessage().isEmpty());
+    }
+  }
+  
+  @Test
+  public void testItemPlacementSkipsToChosenCells() {
+    ConnectionGrid grid = createSampleGrid();
+    ItemPlacement all = new ItemPlacement(grid, 100, new SplittableRandom(3));
+    assertEquals(16, all.getArrowCells().length);
+    int caves = 0;
+    for (int cell = 0; cell < grid.getCellCount(); cell++) {
+      caves += (grid.getDegree(cell) != 2) ? 1 : 0;
+    }
+    assertEquals(caves, all.getTreasureCells().length);
+    ItemPlacement none = new ItemPlacement(grid, 0, new SplittableRandom(3));
+    assertEquals(0, none.getArrowCells().length);
+    assertEquals(0, none.getTreasureCells().length);
+    
+    // Without connections every cell is a cave, and about 49 of each 99 get items.
+    ConnectionGrid open = new ConnectionGridImpl(100, 100);
+    ItemPlacement half = new ItemPlacement(open, 50, new SplittableRandom(5));
+    ItemPlacement again = new ItemPlacement(open, 50, new SplittableRandom(5));
+    int[] arrows = half.getArrowCells();
+    assertTrue(Math.abs(arrows.length - 10000 * 49 / 99) < 300);
+    assertTrue(Math.abs(half.getTreasureCells().length - 10000 * 49 / 99) < 300);
+    for (int i = 1; i < arrows.length; i++) {
+      assertTrue(arrows[i - 1] < arrows[i]);
+    }
+    assertEquals(arrows.length, again.getArrowCells().length);
+    assertEquals(half.getTreasureTypes()[7], again.getTreasureTypes()[7]);
+    
+    Dungeon d = new DungeonImpl(rows, columns, true, 2, 50, 1, 4, true);
+    for (Location l : d.getInitialTreasureCaves()) {
+      assertEquals(LocationType.CAVE, l.getType());
+    }
+  }
+  
+  @Test
+  public void testSeededDungeonsAreReproducible() {
+    RandomStreams streams = new RandomStreams(21);
+    assertEquals(streams.forPhase(GenerationPhase.ITEMS).nextLong(), 
+        new RandomStreams(21).forPhase(GenerationPhase.ITEMS).nextLong());
+    assertTrue(streams.forPhase(GenerationPhase.ITEMS).nextLong() 
+        != streams.forPhase(GenerationPhase.MONSTERS).nextLong());
+    assertTrue(streams.forChunk(0, 1).nextLong() != streams.forChunk(1, 0).nextLong());
+    
+    DungeonImpl a = new DungeonImpl(8, 8, true, 3, 40, 3, 21, true);
+    DungeonImpl b = new DungeonImpl(8, 8, true, 3, 40, 3, 21, true);
+    assertEquals(21, a.getSeed());
+    for (int cell = 0; cell < 64; cell++) {
+      for (Direction dir : Direction.values()) {
+        assertEquals(a.getConnectionGrid().getNeighbour(cell, dir), 
+            b.getConnectionGrid().getNeighbour(cell, dir));
+      }
+    }
+    assertEquals(a.getStart().getRow(), b.getStart().getRow());
+    assertEquals(a.getStart().getColumn(), b.getStart().getColumn());
+    assertEquals(a.getFinish().getRow(), b.getFinish().getRow());
+    assertEquals(a.getFinish().getColumn(), b.getFinish().getColumn());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(a.getMonsters().get(i).getLocation().getRow(), 
+          b.getMonsters().get(i).getLocation().getRow());
+      assertEquals(a.getMonsters().get(i).getLocation().getColumn(), 
+          b.getMonsters().get(i).getLocation().getColumn());
+    }
+    assertEquals(a.getInitialTreasureCaves().size(), b.getInitialTreasureCaves().size());
+    assertEquals(a.getInitialArrowLocations().size(), b.getInitialArrowLocations().size());
+  }
+  
+  @Test
+  public void testBuildPipelineIsDeterministicAcrossExecutors() {
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      DungeonImpl serial = new DungeonImpl(12, 12, true, 6, 40, 5, 17, true, 
+          DistanceMode.CONTRACTED, GenerationStrategy.WILSON, Runnable::run);
+      DungeonImpl concurrent = new DungeonImpl(12, 12, true, 6, 40, 5, 17, true, 
+          DistanceMode.CONTRACTED, GenerationStrategy.WILSON, pool);
+      for (int cell = 0; cell < 144; cell++) {
+        for (Direction dir : Direction.values()) {
+          assertEquals(serial.getConnectionGrid().getNeighbour(cell, dir), 
+              concurrent.getConnectionGrid().getNeighbour(cell, dir));
+        }
+      }
+      assertEquals(serial.getStart().getRow(), concurrent.getStart().getRow());
+      assertEquals(serial.getFinish().getColumn(), concurrent.getFinish().getColumn());
+      assertEquals(serial.getPathDistance(serial.getStart(), serial.getFinish()), 
+          concurrent.getPathDistance(concurrent.getStart(), concurrent.getFinish()));
+      for (int i = 0; i < 5; i++) {
+        assertEquals(serial.getMonsters().get(i).getLocation().getRow(), 
+            concurrent.getMonsters().get(i).getLocation().getRow());
+      }
+      assertEquals(serial.getInitialArrowLocations().size(), 
+          concurrent.getInitialArrowLocations().size());
+      
+      BuildPipeline report = concurrent.getBuildPipeline();
+      for (BuildPhase phase : BuildPhase.values()) {
+        assertTrue(report.getCriticalPath(phase) >= report.getDuration(phase));
+        assertTrue(report.getCriticalPath() >= report.getCriticalPath(phase));
+      }
+      assertTrue(report.getCriticalPath(BuildPhase.MONSTERS) 
+          >= report.getCriticalPath(BuildPhase.CONNECTIONS));
+    }
+    finally {
+      pool.shutdown();
+    }
+  }
+  
+  @Test
+  public void testBuildPipelineCancelsPendingPhasesOnFailure() {
+    List<Runnable> queue = new ArrayList<Runnable>();
+    BuildPipeline pipeline = new BuildPipeline(queue::add);
+    AtomicInteger runs = new AtomicInteger();
+    CompletableFuture<Integer> maze = pipeline.stage(BuildPhase.MAZE, () -> {
+      throw new IllegalArgumentException("Bad maze.");
+    });
+    CompletableFuture<Integer> edges = pipeline.stage(BuildPhase.EDGES, 
+        () -> runs.incrementAndGet());
+    assertEquals(2, queue.size());
+    queue.get(0).run();
+    try {
+      pipeline.await(maze);
+      fail("The failure of the phase should be rethrown.");
+    }
+    catch (IllegalArgumentException e) {
+      assertEquals("Bad maze.", e.getMessage());
+    }
+    for (int i = 1; i < queue.size(); i++) {
+      queue.get(i).run();
+    }
+    assertEquals(0, runs.get());
+    assertTrue(edges.isCancelled());
+  }
+  
+  @Test
+  public void testTooManyMonstersFailsBeforeDistances() {
+    try {
+      new DungeonImpl(12, 12, true, 6, 40, 500, 17, true, 
+          DistanceMode.CONTRACTED, GenerationStrategy.WILSON, Runnable::run);
+      fail("Too many monsters should be rejected.");
+    }
+    catch (IllegalArgumentException e) {
+      assertTrue(e.getMessage().length() > 0);
+    }
+  }
+  
+  /**
+   * Helper to build a 4x4 wrapped grid whose connections form a tree with a wrapped
+   * connection, plus an isolated cell (2, 2).
+   * @return grid with undirected connections set.
+   */
+  private ConnectionGrid createSampleGrid() {
+    ConnectionGrid grid = new ConnectionGridImpl(4, 4);
+    int[][] pairs = {{0, 0, 0, 1}, {0, 1, 0, 2}, {0, 2, 0, 3}, {0, 3, 1, 3}, 
+        {1, 3, 2, 3}, {2, 3, 3, 3}, {0, 0, 3, 0}, {3, 0, 3, 1}, {3, 1, 3, 2}, 
+        {1, 0, 0, 0}, {1, 0, 1, 1}, {1, 1, 1, 2}, {2, 0, 2, 1}, {2, 0, 1, 0}};
+    for (int[] p : pairs) {
+      grid.addConnection(p[0], p[1], p[2], p[3]);
+      grid.addConnection(p[2], p[3], p[0], p[1]);
+    }
+    return grid;
+  }
+  
+  /**
+   * Helper to build a 20x20 wrapped maze with some extra connections, so the grid has
+   * cycles and more sources than the small caches used in the tests.
+   * @param seed long that initializes the maze and the extra connections.
+   * @return grid with undirected connections set.
+   */
+  private ConnectionGrid createLargeGrid(long seed) {
+    ConnectionGrid grid = GenerationStrategy.WILSON.generate(20, 20, true, seed);
+    SplittableRandom random = new SplittableRandom(seed);
+    for (int i = 0; i < 20; i++) {
+      int row = random.nextInt(20);
+      int col = random.nextInt(20);
+      grid.addConnection(row, col, row, (col + 1) % 20);
+      grid.addConnection(row, (col + 1) % 20, row, col);
+    }
+    return grid;
+  }
+  
+  /**
+   * Helper that checks the distances of an engine between every pair of cells
+   * against breadth first search.
+   * @param grid connection grid the engine was built over.
+   * @param engine distance engine to check.
+   */
+  private void assertMatchesBfs(ConnectionGrid grid, DistanceEngine engine) {
+    DistanceEngine bfs = new BfsDistanceEngine(grid);
+    for (int i = 0; i < grid.getCellCount(); i++) {
+      for (int j = 0; j < grid.getCellCount(); j++) {
+        assertEquals(bfs.getDistance(i, j), engine.getDistance(i, j));
+      }
+    }
+  }
 }